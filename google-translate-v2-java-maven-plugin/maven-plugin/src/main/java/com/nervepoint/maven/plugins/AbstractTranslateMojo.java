@@ -0,0 +1,161 @@
+package com.nervepoint.maven.plugins;
+
+import com.nervepoint.translate.CacheFiles;
+import com.nervepoint.translate.PatternReplacer;
+import com.nervepoint.translate.PropertiesWithoutComments;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * Configuration and helpers shared by the goals that work with the
+ * translation cache.
+ */
+public abstract class AbstractTranslateMojo extends AbstractMojo {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * @parameter expression="${basedir}/src/main/resources"
+     */
+    protected String sourceDirectory;
+
+    /**
+     * @parameter expression="en" default-value="en"
+     */
+    protected String sourceLanguage;
+
+    /**
+     * @parameter expression="es,fr,nl,it,pl,
+     */
+    protected String languages;
+
+    /**
+     * @parameter default-value="${translateCacheDir}"
+     */
+    protected String cacheDir;
+
+    /**
+     * @parameter
+     */
+    protected String cacheTag;
+
+    /**
+     * @parameter
+     */
+    protected List<String> noTranslatePattern = new ArrayList<String>();
+
+    /**
+     * @parameter default-value="true"
+     */
+    protected boolean failOnMissingCacheDir;
+
+    /**
+     * @parameter default-value="${project}"
+     * @required
+     * @readonly
+     */
+    protected MavenProject project;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Work out the cache folder for this project, i.e.
+     * <code>&lt;cacheDir&gt;/&lt;groupId&gt;[/&lt;cacheTag&gt;]/&lt;artifactId&gt;</code>,
+     * creating it if needed.
+     */
+    protected File resolveProjectCacheDir() throws MojoFailureException {
+        File masterCache = resolveMasterCacheDir();
+
+        File rootCacheDir = new File(masterCache, project.getGroupId()
+                + (cacheTag != null ? File.separator + cacheTag : ""));
+
+        getLog().info(
+                "Master cache folder for this group/tag is "
+                        + rootCacheDir.getAbsolutePath());
+
+        if (!rootCacheDir.exists() && failOnMissingCacheDir) {
+            throw new MojoFailureException(
+                    "Master cache folder is empty. This will result in full translation of all texts, either set failOnMissingCacheDir to false in plugin configuration, or create the folder to override this setting.");
+        }
+
+        rootCacheDir = new File(rootCacheDir, project.getArtifactId());
+
+        getLog().info(
+                "Actual project cache is " + rootCacheDir.getAbsolutePath());
+
+        rootCacheDir.mkdirs();
+        return rootCacheDir;
+    }
+
+    protected File resolveMasterCacheDir() {
+        getLog().info("Cache dir is " + cacheDir);
+
+        if (cacheDir == null || cacheDir.equals("${translateCacheDir}")) {
+            getLog().info("Using default cache");
+            return new File(System.getProperty("user.home"),
+                    ".i18n_cache");
+        } else {
+            getLog().info("Using user defined cache " + cacheDir);
+            return new File(cacheDir);
+        }
+    }
+
+    protected PatternReplacer createReplacer() {
+        PatternReplacer replacer = new PatternReplacer();
+        for (String p : noTranslatePattern) {
+            getLog().info("Will not translate content matching " + p);
+            replacer.addPattern(p);
+        }
+        return replacer;
+    }
+
+    protected PropertiesWithoutComments loadProperties(File path, String type, boolean isUTF8)
+            throws IOException {
+        if (path.exists()) {
+            getLog().info("Loading " + type + " file " + path.getAbsolutePath());
+        } else if (type.equals("cache")) {
+            getLog().warn(
+                    "Could not find cache file "
+                            + path
+                            + " so a complete translation will be performed");
+        }
+        return CacheFiles.load(path);
+    }
+
+    /**
+     * Find the source bundle a cache file was generated from. Cache files are
+     * named <code>&lt;base&gt;_&lt;lang&gt;.properties</code>, and the source is
+     * either <code>&lt;base&gt;_&lt;sourceLanguage&gt;.properties</code> or
+     * <code>&lt;base&gt;.properties</code>.
+     */
+    protected File findSourceFile(String path) {
+        int lidx = path.lastIndexOf('/');
+        String dir = lidx == -1 ? "" : path.substring(0, lidx);
+        String base = path.substring(lidx + 1, path.length() - ".properties".length());
+
+        StringTokenizer t = new StringTokenizer(languages, ",");
+        while (t.hasMoreTokens()) {
+            String l = t.nextToken();
+            if (base.endsWith("_" + l)) {
+                base = base.substring(0, base.length() - l.length() - 1);
+                break;
+            }
+        }
+
+        File sourceDir = dir.equals("") ? new File(sourceDirectory) : new File(sourceDirectory, dir);
+        File sourceFile = new File(sourceDir, base + "_" + sourceLanguage + ".properties");
+        if (!sourceFile.exists()) {
+            sourceFile = new File(sourceDir, base + ".properties");
+        }
+        return sourceFile;
+    }
+
+    protected String hash(String content) {
+        return CacheFiles.hash(content);
+    }
+}
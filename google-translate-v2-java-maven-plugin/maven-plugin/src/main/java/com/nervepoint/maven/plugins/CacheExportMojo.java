@@ -0,0 +1,42 @@
+package com.nervepoint.maven.plugins;
+
+import com.nervepoint.translate.CacheSnapshot;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Packs the whole translation cache into one snapshot file (see
+ * {@link CacheSnapshot}), for CI builds to save between jobs instead of the
+ * cache folder. Restore it with the cache-import goal, or use it directly
+ * with the <code>cacheSnapshot</code> parameter of the translate goal.
+ *
+ * @goal cache-export
+ * @aggregator
+ * @threadSafe
+ */
+public class CacheExportMojo extends AbstractTranslateMojo {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * @parameter expression="${translate.cacheSnapshot}" default-value="${project.build.directory}/translate-cache.snapshot"
+     */
+    private File snapshot;
+
+// --------------------- Interface Mojo ---------------------
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        File masterCache = resolveMasterCacheDir();
+        long started = System.currentTimeMillis();
+        try {
+            int files = CacheSnapshot.export(masterCache, snapshot);
+            getLog().info("Exported " + files + " cache files to " + snapshot.getAbsolutePath() + " ("
+                    + snapshot.length() / 1024 + "KB) in " + (System.currentTimeMillis() - started) + "ms");
+        } catch (IOException e) {
+            getLog().error(e);
+            throw new MojoFailureException("Export failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.nervepoint.maven.plugins;
+
+import com.nervepoint.translate.CacheSnapshot;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Restores a snapshot made by the cache-export goal into the translation
+ * cache folder. Files in the snapshot replace those in the folder, anything
+ * else in the folder is left alone. Nothing is changed if the snapshot turns
+ * out to be corrupt.
+ *
+ * @goal cache-import
+ * @aggregator
+ * @threadSafe
+ */
+public class CacheImportMojo extends AbstractTranslateMojo {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * @parameter expression="${translate.cacheSnapshot}" default-value="${project.build.directory}/translate-cache.snapshot"
+     */
+    private File snapshot;
+
+    /**
+     * Number of files written at once, by default one per processor.
+     *
+     * @parameter expression="${translate.cacheImportThreads}" default-value="0"
+     */
+    private int threads;
+
+// --------------------- Interface Mojo ---------------------
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (!snapshot.isFile()) {
+            getLog().info("Nothing to import, " + snapshot + " does not exist");
+            return;
+        }
+        File masterCache = resolveMasterCacheDir();
+        long started = System.currentTimeMillis();
+        try {
+            int files = CacheSnapshot.restore(snapshot, masterCache,
+                    threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+            getLog().info("Restored " + files + " cache files to " + masterCache.getAbsolutePath() + " in "
+                    + (System.currentTimeMillis() - started) + "ms");
+        } catch (IOException e) {
+            getLog().error(e);
+            throw new MojoFailureException("Import failed: " + e.getMessage());
+        }
+    }
+}
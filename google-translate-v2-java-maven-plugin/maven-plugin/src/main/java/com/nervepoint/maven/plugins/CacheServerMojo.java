@@ -0,0 +1,72 @@
+package com.nervepoint.maven.plugins;
+
+import com.nervepoint.translate.RemoteCacheServer;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Runs a {@link RemoteCacheServer} until the build is interrupted. It listens
+ * on the loopback interface unless a host is given, and only stores
+ * translations from builds sending its token.
+ *
+ * @goal cache-server
+ * @requiresProject false
+ * @threadSafe
+ */
+public class CacheServerMojo extends AbstractMojo {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * @parameter expression="${translate.cacheServerPort}" default-value="8765"
+     */
+    private int port;
+
+    /**
+     * Address to listen on. Only set this to a network address when the
+     * network is trusted, and a token is set.
+     *
+     * @parameter expression="${translate.cacheServerHost}" default-value="127.0.0.1"
+     */
+    private String host;
+
+    /**
+     * Token builds must send (as remoteCacheToken) to store translations.
+     * Without one the cache is read only.
+     *
+     * @parameter expression="${translate.cacheServerToken}"
+     */
+    private String token;
+
+    /**
+     * @parameter expression="${translate.cacheServerDirectory}" default-value="${user.home}/.i18n_remote_cache"
+     */
+    private File directory;
+
+// --------------------- Interface Mojo ---------------------
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        RemoteCacheServer server = new RemoteCacheServer(directory);
+        server.setToken(token);
+        try {
+            server.start(host, port);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not start cache server", e);
+        }
+        if (server.isReadOnly()) {
+            getLog().warn("No token is set, so the cache is read only");
+        }
+        getLog().info("Serving translation cache in " + directory.getAbsolutePath() + " on " + server.getAddress()
+                + ". Press Ctrl+C to stop.");
+        try {
+            Thread.sleep(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            server.stop();
+        }
+    }
+}
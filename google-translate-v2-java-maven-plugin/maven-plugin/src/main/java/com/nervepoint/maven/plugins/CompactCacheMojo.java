@@ -0,0 +1,106 @@
+package com.nervepoint.maven.plugins;
+
+import com.nervepoint.translate.CacheCompactor;
+import com.nervepoint.translate.CacheFiles;
+import com.nervepoint.translate.PropertiesWithoutComments;
+import com.nervepoint.translate.Segmenter;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Removes entries from this project's translation cache whose keys no longer
+ * exist in the source bundles, cached sentences that are no longer part of
+ * their text, and cache files for bundles that no longer exist at all. Cache
+ * files are only removed when they are for one of the configured languages,
+ * so their source bundle is known to be gone.
+ *
+ * @goal compact-cache
+ * @threadSafe
+ */
+public class CompactCacheMojo extends AbstractTranslateMojo {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * Git refs (branches or tags) whose source bundles should also be
+     * considered live. Use this when the cache is shared with builds of other
+     * branches.
+     *
+     * @parameter
+     */
+    private List<String> keepRefs = new ArrayList<String>();
+
+// --------------------- Interface Mojo ---------------------
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        File rootCacheDir = resolveProjectCacheDir();
+        CacheCompactor compactor = new CacheCompactor(new MavenTranslateLog(getLog()), keepRefs);
+        compactor.setSegmenter(new Segmenter(sourceLanguage), createReplacer());
+
+        try {
+            long[] totals = new long[3];
+            compactDirectory(compactor, rootCacheDir, "", totals);
+            getLog().info("Removed " + totals[0] + " stale cache entries, reclaiming " + totals[1]
+                    + " bytes of " + totals[2]);
+        } catch (IOException e) {
+            getLog().error(e);
+            throw new MojoFailureException("Compaction failed: " + e.getMessage());
+        }
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private void compactDirectory(CacheCompactor compactor, File dir, String path, long[] totals) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            String rel = path.equals("") ? f.getName() : path + "/" + f.getName();
+            if (f.isDirectory()) {
+                compactDirectory(compactor, f, rel, totals);
+            } else if (f.getName().endsWith(".properties")) {
+                compactFile(compactor, f, rel, totals);
+            }
+        }
+    }
+
+    private void compactFile(CacheCompactor compactor, File cacheFile, String path, long[] totals) throws IOException {
+        long size = cacheFile.length();
+        totals[2] += size;
+
+        File sourceFile = CacheCompactor.findSourceFile(new File(sourceDirectory), path, sourceLanguage,
+                Arrays.asList(languages.split(",")));
+        if (sourceFile == null) {
+            getLog().warn("Skipping cache " + path + " as its source bundle cannot be worked out for certain."
+                    + " Add its language to languages if it is still translated to.");
+            return;
+        }
+        PropertiesWithoutComments cached = loadProperties(cacheFile, "cache", false);
+        Map<Object, Object> loaded = CacheFiles.snapshot(cached);
+        Set<String> live = compactor.getLiveKeys(sourceFile,
+                sourceFile.exists() ? loadProperties(sourceFile, "source", true) : null);
+
+        int removed = compactor.compact(cached, live);
+        if (removed == 0) {
+            return;
+        }
+        totals[0] += removed;
+
+        CacheFiles.store(cacheFile, loaded, cached,
+                "Cache of auto generated google translations for Google Translate V2 API maven plugin");
+        if (cacheFile.exists()) {
+            getLog().info("Removed " + removed + " stale entries from " + path);
+            totals[1] += size - cacheFile.length();
+        } else {
+            getLog().info("Removed cache " + path + " as its source bundle no longer exists");
+            totals[1] += size;
+        }
+    }
+}
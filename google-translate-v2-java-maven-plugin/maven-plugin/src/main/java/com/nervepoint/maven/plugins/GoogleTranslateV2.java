@@ -0,0 +1,443 @@
+package com.nervepoint.maven.plugins;
+
+import com.nervepoint.translate.TranslationEngine;
+import org.apache.maven.model.FileSet;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Translates the resource bundles of a project. The work is done by
+ * {@link TranslationEngine}, this goal just configures it from the plugin
+ * parameters.
+ *
+ * @author Lee David Painter
+ * @author Brett Smith
+ * @goal translate
+ * @requiresProject false
+ * @threadSafe
+ */
+public class GoogleTranslateV2 extends AbstractTranslateMojo {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * @parameter
+     */
+    boolean recurse;
+
+    /**
+     * @parameter expression="${api.key} default-value=""
+     */
+    private String apikey;
+
+    /**
+     * Name of the translation backend to use, e.g. <code>google-v2</code> or
+     * <code>fake</code>. Defaults to <code>fake</code> when the API key is
+     * <code>fake</code>, otherwise <code>google-v2</code>.
+     *
+     * @parameter expression="${translate.backend}"
+     */
+    private String backend;
+
+    /**
+     * @parameter
+     */
+    private FileSet fileSet;
+
+    /**
+     * @parameter expression="${basedir}/target/classes"
+     * default-value="${basedir}/target/classes"
+     */
+    private String targetDirectory;
+
+    /**
+     * @parameter default-value="false"
+     */
+    private boolean failOnMissingSourceDir;
+
+    /**
+     * Maximum number of seconds a single build may spend translating. Once used
+     * up, any remaining untranslated texts are written with their source text
+     * and translated by the next build. Zero means no limit.
+     *
+     * @parameter expression="${translate.maxTranslationTime}" default-value="0"
+     */
+    private long maxTranslationTime;
+
+    /**
+     * Maximum number of characters a single build may send for translation.
+     * Works in the same way as maxTranslationTime. Zero means no limit.
+     *
+     * @parameter expression="${translate.maxCharactersPerBuild}" default-value="0"
+     */
+    private long maxCharactersPerBuild;
+
+    /**
+     * Texts at least this long are split into sentences, which are translated
+     * and cached separately. This means a small change to a long text only
+     * needs the changed sentences translating again. Zero turns this off.
+     *
+     * @parameter expression="${translate.segmentThreshold}" default-value="0"
+     */
+    private int segmentThreshold;
+
+    /**
+     * Whether to look for similar, previously translated texts in the
+     * translation memory before translating. One of <code>off</code>,
+     * <code>report</code> (log matches, but still translate) or
+     * <code>apply</code> (use the match instead of translating). The memory is kept in the master
+     * cache folder and shared by all projects using it, and is filled from
+     * cache hits and new translations as bundles are translated.
+     *
+     * @parameter expression="${translate.translationMemory}" default-value="off"
+     */
+    private String translationMemory;
+
+    /**
+     * How similar, between 0 and 1, a previous translation must be to be used
+     * from the translation memory.
+     *
+     * @parameter expression="${translate.translationMemoryThreshold}" default-value="0.9"
+     */
+    private float translationMemoryThreshold;
+
+    /**
+     * Use near matches applied from the translation memory only until a later
+     * build has translation budget to spare, then translate them properly.
+     * This is always done when maxTranslationTime or maxCharactersPerBuild is
+     * set. Otherwise applied matches are kept as the translation.
+     *
+     * @parameter expression="${translate.retranslateMemoryMatches}" default-value="false"
+     */
+    private boolean retranslateMemoryMatches;
+
+    /**
+     * Remove cache entries for keys that no longer exist in the source bundles
+     * as part of translating. See also the compact-cache goal.
+     *
+     * @parameter expression="${translate.compactCache}" default-value="false"
+     */
+    private boolean compactCache;
+
+    /**
+     * Git refs (branches or tags) whose source bundles should also be
+     * considered live when compacting the cache.
+     *
+     * @parameter
+     */
+    private List<String> keepRefs = new ArrayList<String>();
+
+    /**
+     * URL of a shared translation cache, checked before sending texts for
+     * translation. New translations are stored there too, unless
+     * remoteCacheWrite is false. See the cache-server goal for a simple server.
+     *
+     * @parameter expression="${translate.remoteCacheUrl}"
+     */
+    private String remoteCacheUrl;
+
+    /**
+     * @parameter expression="${translate.remoteCacheWrite}" default-value="true"
+     */
+    private boolean remoteCacheWrite;
+
+    /**
+     * Connect and read timeout for the remote cache, in milliseconds.
+     *
+     * @parameter expression="${translate.remoteCacheTimeout}" default-value="10000"
+     */
+    private int remoteCacheTimeout;
+
+    /**
+     * Token the remote cache needs before it will store translations, see
+     * the token of the cache-server goal.
+     *
+     * @parameter expression="${translate.remoteCacheToken}"
+     */
+    private String remoteCacheToken;
+
+    /**
+     * Index of the shard this build translates, from 0 to shardCount - 1.
+     *
+     * @parameter expression="${translate.shardIndex}" default-value="0"
+     */
+    private int shardIndex;
+
+    /**
+     * Number of shards the translation work is split into. When greater than 1,
+     * only the bundle / language pairs belonging to shardIndex are translated,
+     * and cache changes are written to shardOutputDirectory instead of the
+     * cache folder. Use the merge-shards goal to combine them afterwards.
+     *
+     * @parameter expression="${translate.shardCount}" default-value="1"
+     */
+    private int shardCount;
+
+    /**
+     * @parameter expression="${translate.shardOutputDirectory}" default-value="${project.build.directory}/translate-shards"
+     */
+    private File shardOutputDirectory;
+
+    /**
+     * How to write translated bundles, a comma separated list of
+     * <code>properties</code> (the default), <code>class</code> and
+     * <code>binary</code>. <code>class</code> generates the source of a
+     * ResourceBundle subclass for each bundle into generatedSourceDirectory,
+     * which is added to the compile source roots, so the goal must run before
+     * compile. Applications then load the bundles as classes, with no parsing
+     * and no table to build. <code>binary</code> writes a
+     * <code>.tbundle</code> file next to each properties file, to be loaded
+     * with BinaryBundleControl from the translate-runtime module.
+     *
+     * @parameter expression="${translate.bundleFormat}" default-value="properties"
+     */
+    private String bundleFormat;
+
+    /**
+     * @parameter expression="${translate.generatedSourceDirectory}" default-value="${project.build.directory}/generated-sources/translate"
+     */
+    private File generatedSourceDirectory;
+
+    /**
+     * When greater than zero, a translation request that has not answered by
+     * this percentile of recent request latency (e.g. 95) is sent again, and
+     * whichever answer arrives first is used. Zero turns this off.
+     *
+     * @parameter expression="${translate.hedgePercentile}" default-value="0"
+     */
+    private double hedgePercentile;
+
+    /**
+     * Most requests that may be sent again by hedging, as a fraction of all
+     * requests. Hedged requests cost API quota like any other.
+     *
+     * @parameter expression="${translate.hedgeMaxRate}" default-value="0.1"
+     */
+    private double hedgeMaxRate;
+
+    /**
+     * Normalize texts (Unicode NFC, line endings, runs of spaces, leading and
+     * trailing white space) before looking them up in the cache and sending
+     * them for translation, so texts that differ only in these ways are not
+     * translated again. Existing cache entries stay valid.
+     *
+     * @parameter expression="${translate.normalizeCacheKeys}" default-value="false"
+     */
+    private boolean normalizeCacheKeys;
+
+    /**
+     * Run bundles through a pipeline of concurrent stages (load and diff,
+     * translate, write) instead of one at a time. Useful with many bundles.
+     *
+     * @parameter expression="${translate.pipeline}" default-value="false"
+     */
+    private boolean pipeline;
+
+    /**
+     * Threads loading bundles and working out what needs translating.
+     *
+     * @parameter expression="${translate.pipelineLoadThreads}" default-value="2"
+     */
+    private int pipelineLoadThreads;
+
+    /**
+     * Threads sending batches to the backend.
+     *
+     * @parameter expression="${translate.pipelineTranslateThreads}" default-value="4"
+     */
+    private int pipelineTranslateThreads;
+
+    /**
+     * Threads writing translated bundles and caches.
+     *
+     * @parameter expression="${translate.pipelineWriteThreads}" default-value="1"
+     */
+    private int pipelineWriteThreads;
+
+    /**
+     * How many bundles may wait in front of each pipeline stage.
+     *
+     * @parameter expression="${translate.pipelineQueueSize}" default-value="16"
+     */
+    private int pipelineQueueSize;
+
+    /**
+     * Most characters of untranslated text held by the pipeline at once.
+     *
+     * @parameter expression="${translate.pipelineMaxInFlightCharacters}" default-value="200000"
+     */
+    private int pipelineMaxInFlightCharacters;
+
+    /**
+     * On Java 21 and later, run the pipeline on virtual threads instead of
+     * the thread pools sized above. Ignored on older JVMs.
+     *
+     * @parameter expression="${translate.virtualThreads}" default-value="false"
+     */
+    private boolean virtualThreads;
+
+    /**
+     * Most requests sent to the API at once when running on virtual threads.
+     *
+     * @parameter expression="${translate.maxConcurrentRequests}" default-value="16"
+     */
+    private int maxConcurrentRequests;
+
+    /**
+     * Most memory, in bytes, for translations kept in memory and shared with
+     * later modules of the build, or later builds in a Maven daemon. As much
+     * again is used for parsed bundles and cache files, which are only read
+     * from disk again when they change. Off (zero) unless set, as the memory
+     * is held for the life of the JVM.
+     *
+     * @parameter expression="${translate.sharedCacheSize}" default-value="0"
+     */
+    private long sharedCacheSize;
+
+    /**
+     * Snapshot made by the cache-export goal to use as a read-only cache
+     * beneath the cache folder, instead of restoring it first. New
+     * translations are written to the cache folder.
+     *
+     * @parameter expression="${translate.cacheSnapshot}"
+     */
+    private File cacheSnapshot;
+
+    /**
+     * Least time, in seconds, between progress reports. Detail about each
+     * bundle and text is only logged at debug level (mvn -X).
+     *
+     * @parameter expression="${translate.progressInterval}" default-value="10"
+     */
+    private long progressInterval;
+
+    /**
+     * List the folders of the source directory on several threads, which
+     * helps with large resource trees.
+     *
+     * @parameter expression="${translate.parallelScan}" default-value="false"
+     */
+    private boolean parallelScan;
+
+    /**
+     * File to keep the folder listings of the source directory in, so
+     * folders that haven't changed since the last build aren't listed again.
+     *
+     * @parameter expression="${translate.scanIndex}" default-value="${project.build.directory}/translate-scan.idx"
+     */
+    private File scanIndex;
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface Mojo ---------------------
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        TranslationEngine engine = createEngine();
+        if (engine == null) {
+            return;
+        }
+
+        try {
+            engine.run();
+        } catch (Exception e) {
+            getLog().error(e);
+            throw new MojoFailureException("Translate failed: " + e.getMessage());
+        }
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Create an engine configured from the plugin parameters.
+     *
+     * @return engine, or <code>null</code> if there is no API key so nothing should be translated
+     */
+    @SuppressWarnings("unchecked")
+    protected TranslationEngine createEngine() throws MojoFailureException {
+        if (apikey == null) {
+            getLog().info(
+                    "Translation will not be performed because there is no API key available");
+            return null;
+        }
+
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new MojoFailureException("shardIndex must be between 0 and "
+                    + (shardCount - 1) + " (shardCount is " + shardCount + ")");
+        }
+
+        File rootCacheDir = resolveProjectCacheDir();
+        File shardCacheDir;
+
+        if (shardCount > 1) {
+            shardCacheDir = new File(shardOutputDirectory, "shard-" + shardIndex);
+            getLog().info("Translating shard " + shardIndex + " of " + shardCount
+                    + ", cache changes will be written to " + shardCacheDir.getAbsolutePath());
+        } else {
+            shardCacheDir = rootCacheDir;
+        }
+
+        TranslationEngine engine = new TranslationEngine(new MavenTranslateLog(getLog()));
+        engine.setSourceDirectory(new File(sourceDirectory));
+        engine.setTargetDirectory(new File(targetDirectory));
+        engine.setCacheDirectory(rootCacheDir);
+        engine.setWriteCacheDirectory(shardCacheDir);
+        engine.setMasterCacheDirectory(resolveMasterCacheDir());
+        engine.setSourceLanguage(sourceLanguage);
+        engine.setLanguages(languages);
+        engine.setRecurse(recurse);
+        if (fileSet != null) {
+            if (fileSet.getIncludes() != null && fileSet.getIncludes().size() > 0) {
+                engine.setIncludes((String[]) fileSet.getIncludes().toArray(new String[0]));
+            }
+            if (fileSet.getExcludes() != null) {
+                engine.setExcludes((String[]) fileSet.getExcludes().toArray(new String[0]));
+            }
+        }
+        engine.setFailOnMissingSourceDir(failOnMissingSourceDir);
+        engine.setNoTranslatePatterns(noTranslatePattern);
+        engine.setBackendName(backend == null || backend.length() == 0
+                ? ("fake".equals(apikey) ? "fake" : "google-v2") : backend);
+        engine.setBackendClassLoader(getClass().getClassLoader());
+        engine.setApikey(apikey);
+        engine.setMaxTranslationTime(maxTranslationTime);
+        engine.setMaxCharactersPerBuild(maxCharactersPerBuild);
+        engine.setSegmentThreshold(segmentThreshold);
+        engine.setTranslationMemory(translationMemory);
+        engine.setTranslationMemoryThreshold(translationMemoryThreshold);
+        engine.setRetranslateMemoryMatches(retranslateMemoryMatches);
+        engine.setCompactCache(compactCache);
+        engine.setKeepRefs(keepRefs);
+        engine.setRemoteCacheUrl(remoteCacheUrl);
+        engine.setRemoteCacheWrite(remoteCacheWrite);
+        engine.setRemoteCacheTimeout(remoteCacheTimeout);
+        engine.setRemoteCacheToken(remoteCacheToken);
+        engine.setShardIndex(shardIndex);
+        engine.setShardCount(shardCount);
+        engine.setNormalizeCacheKeys(normalizeCacheKeys);
+        engine.setHedgePercentile(hedgePercentile);
+        engine.setHedgeMaxRate(hedgeMaxRate);
+        engine.setPipeline(pipeline);
+        engine.setPipelineLoadThreads(pipelineLoadThreads);
+        engine.setPipelineTranslateThreads(pipelineTranslateThreads);
+        engine.setPipelineWriteThreads(pipelineWriteThreads);
+        engine.setPipelineQueueSize(pipelineQueueSize);
+        engine.setPipelineMaxInFlightCharacters(pipelineMaxInFlightCharacters);
+        engine.setVirtualThreads(virtualThreads);
+        engine.setMaxConcurrentRequests(maxConcurrentRequests);
+        engine.setSharedCacheSize(sharedCacheSize);
+        engine.setCacheSnapshot(cacheSnapshot);
+        engine.setProgressInterval(progressInterval);
+        engine.setParallelScan(parallelScan);
+        engine.setScanIndex(scanIndex);
+        engine.setBundleFormat(bundleFormat);
+        if (bundleFormat.contains("class")) {
+            engine.setGeneratedSourceDirectory(generatedSourceDirectory);
+            project.addCompileSourceRoot(generatedSourceDirectory.getAbsolutePath());
+        }
+        return engine;
+    }
+}
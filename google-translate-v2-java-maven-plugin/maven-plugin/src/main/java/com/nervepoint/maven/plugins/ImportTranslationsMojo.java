@@ -0,0 +1,110 @@
+package com.nervepoint.maven.plugins;
+
+import com.nervepoint.translate.CacheImporter;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.StringTokenizer;
+
+/**
+ * Seeds this project's translation cache from bundles that are already
+ * translated, so the first build after adopting the plugin, or after losing
+ * the cache, doesn't translate everything again. <code>importDirectory</code>
+ * must be given, pointing at a folder of legacy or hand made translations
+ * laid out like the source folder. There is deliberately no default, as the
+ * output directory may hold bundles from a run with the fake backend, and
+ * importing those would cache them as real translations.
+ *
+ * @goal import-translations
+ * @threadSafe
+ */
+public class ImportTranslationsMojo extends AbstractTranslateMojo {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * Folder of translated bundles, named
+     * <code>&lt;base&gt;_&lt;language&gt;.properties</code> in the same
+     * sub-folders as their source bundles. Required.
+     *
+     * @parameter expression="${translate.importDirectory}"
+     */
+    private File importDirectory;
+
+    /**
+     * Replace cache entries that are already valid for the current source
+     * texts. By default they are kept.
+     *
+     * @parameter expression="${translate.importOverwrite}" default-value="false"
+     */
+    private boolean overwrite;
+
+    /**
+     * Number of bundles imported at once, by default one per processor.
+     *
+     * @parameter expression="${translate.importThreads}" default-value="0"
+     */
+    private int threads;
+
+// --------------------- Interface Mojo ---------------------
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (importDirectory == null) {
+            throw new MojoFailureException("importDirectory (translate.importDirectory) must be set to the folder"
+                    + " of translated bundles to import");
+        }
+        if (!importDirectory.isDirectory()) {
+            throw new MojoFailureException("importDirectory " + importDirectory + " does not exist");
+        }
+        File rootCacheDir = resolveProjectCacheDir();
+        CacheImporter importer = new CacheImporter(new MavenTranslateLog(getLog()), createReplacer());
+        importer.setOverwrite(overwrite);
+
+        long started = System.currentTimeMillis();
+        try {
+            addDirectory(importer, importDirectory, "", rootCacheDir);
+            importer.run(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        } catch (IOException e) {
+            getLog().error(e);
+            throw new MojoFailureException("Import failed: " + e.getMessage());
+        }
+        getLog().info("Imported " + importer.getImported() + " translations in "
+                + (System.currentTimeMillis() - started) + "ms, kept " + importer.getKept()
+                + " existing cache entries, skipped " + importer.getUntranslated() + " untranslated texts and "
+                + importer.getMismatched() + " texts whose untranslatable content doesn't match the source");
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private void addDirectory(CacheImporter importer, File dir, String path, File rootCacheDir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            String rel = path.equals("") ? f.getName() : path + "/" + f.getName();
+            if (f.isDirectory()) {
+                addDirectory(importer, f, rel, rootCacheDir);
+            } else if (f.getName().endsWith(".properties") && isTranslation(f.getName())) {
+                File sourceFile = findSourceFile(rel);
+                if (sourceFile.exists()) {
+                    importer.add(sourceFile, f, new File(rootCacheDir, rel));
+                } else {
+                    getLog().debug("Not importing " + rel + " as there is no source bundle for it");
+                }
+            }
+        }
+    }
+
+    private boolean isTranslation(String name) {
+        String base = name.substring(0, name.length() - ".properties".length());
+        StringTokenizer t = new StringTokenizer(languages, ",");
+        while (t.hasMoreTokens()) {
+            if (base.endsWith("_" + t.nextToken())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,48 @@
+package com.nervepoint.maven.plugins;
+
+import com.nervepoint.translate.TranslateLog;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Reports engine messages through the Maven build log.
+ */
+public class MavenTranslateLog implements TranslateLog {
+// ------------------------------ FIELDS ------------------------------
+
+    private final Log log;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public MavenTranslateLog(Log log) {
+        this.log = log;
+    }
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface TranslateLog ---------------------
+
+    public boolean isDebugEnabled() {
+        return log.isDebugEnabled();
+    }
+
+    public void debug(String message) {
+        log.debug(message);
+    }
+
+    public void info(String message) {
+        log.info(message);
+    }
+
+    public void warn(String message) {
+        log.warn(message);
+    }
+
+    public void error(String message) {
+        log.error(message);
+    }
+
+    public void error(Throwable error) {
+        log.error(error);
+    }
+}
@@ -0,0 +1,98 @@
+package com.nervepoint.maven.plugins;
+
+import com.nervepoint.translate.ShardMerger;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Merges the cache changes written by a sharded translate run (see
+ * <code>shardIndex</code> / <code>shardCount</code>) back into the cache
+ * folder. When two shards, or a shard and the existing cache, disagree about
+ * a key, the entry whose hash matches the current source text wins.
+ *
+ * @goal merge-shards
+ * @threadSafe
+ */
+public class MergeShardsMojo extends AbstractTranslateMojo {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * Folder containing the <code>shard-N</code> folders produced by each shard.
+     *
+     * @parameter expression="${translate.shardOutputDirectory}" default-value="${project.build.directory}/translate-shards"
+     */
+    private File shardOutputDirectory;
+
+// --------------------- Interface Mojo ---------------------
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        File[] shards = shardOutputDirectory.listFiles(new FileFilter() {
+            public boolean accept(File f) {
+                return f.isDirectory() && f.getName().startsWith("shard-");
+            }
+        });
+        if (shards == null || shards.length == 0) {
+            getLog().info("No shards found in " + shardOutputDirectory.getAbsolutePath());
+            return;
+        }
+        Arrays.sort(shards, new Comparator<File>() {
+            public int compare(File o1, File o2) {
+                return shardNumber(o1) - shardNumber(o2);
+            }
+        });
+
+        File rootCacheDir = resolveProjectCacheDir();
+        ShardMerger merger = new ShardMerger(new MavenTranslateLog(getLog()), createReplacer());
+
+        Map<String, List<File>> deltas = new TreeMap<String, List<File>>();
+        for (File shard : shards) {
+            collectDeltas(shard, "", deltas);
+        }
+
+        try {
+            int entries = 0;
+            for (Map.Entry<String, List<File>> en : deltas.entrySet()) {
+                entries += merger.merge(new File(rootCacheDir, en.getKey()), en.getValue(),
+                        findSourceFile(en.getKey()));
+            }
+            getLog().info("Merged " + entries + " entries in " + deltas.size() + " cache files from "
+                    + shards.length + " shards, " + merger.getConflicts() + " conflicts resolved");
+        } catch (IOException e) {
+            getLog().error(e);
+            throw new MojoFailureException("Merge failed: " + e.getMessage());
+        }
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private static int shardNumber(File shard) {
+        try {
+            return Integer.parseInt(shard.getName().substring("shard-".length()));
+        } catch (NumberFormatException nfe) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    private void collectDeltas(File dir, String path, Map<String, List<File>> deltas) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            String rel = path.equals("") ? f.getName() : path + "/" + f.getName();
+            if (f.isDirectory()) {
+                collectDeltas(f, rel, deltas);
+            } else if (f.getName().endsWith(".properties")) {
+                List<File> l = deltas.get(rel);
+                if (l == null) {
+                    l = new ArrayList<File>();
+                    deltas.put(rel, l);
+                }
+                l.add(f);
+            }
+        }
+    }
+}
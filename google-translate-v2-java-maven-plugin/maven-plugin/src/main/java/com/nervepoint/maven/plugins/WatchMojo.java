@@ -0,0 +1,65 @@
+package com.nervepoint.maven.plugins;
+
+import com.nervepoint.translate.BundleCache;
+import com.nervepoint.translate.BundleWatcher;
+import com.nervepoint.translate.TranslationEngine;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Translates, then keeps watching the source directory and re-translates
+ * each bundle as soon as it or one of its override files is saved. Parsed
+ * bundles and caches are kept in memory between changes. Takes the same
+ * parameters as the translate goal and runs until the build is interrupted.
+ *
+ * @goal watch
+ * @requiresProject false
+ */
+public class WatchMojo extends GoogleTranslateV2 {
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface Mojo ---------------------
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        final TranslationEngine engine = createEngine();
+        if (engine == null) {
+            return;
+        }
+        engine.setBundleCache(new BundleCache());
+
+        try {
+            engine.run();
+        } catch (Exception e) {
+            getLog().error(e);
+            throw new MojoFailureException("Translate failed: " + e.getMessage());
+        }
+
+        getLog().info("Press Ctrl+C to stop.");
+        try {
+            new BundleWatcher(new MavenTranslateLog(getLog()), new File(sourceDirectory)).watch(new BundleWatcher.Listener() {
+                public void changed(Set<String> files) {
+                    long started = System.currentTimeMillis();
+                    try {
+                        if (files == null) {
+                            engine.run();
+                        } else {
+                            getLog().info("Changed " + files);
+                            engine.run(files);
+                        }
+                        getLog().info("Translated in " + (System.currentTimeMillis() - started) + "ms");
+                    } catch (Exception e) {
+                        getLog().error(e);
+                    }
+                }
+            });
+        } catch (IOException ioe) {
+            throw new MojoExecutionException("Could not watch " + sourceDirectory, ioe);
+        }
+    }
+}
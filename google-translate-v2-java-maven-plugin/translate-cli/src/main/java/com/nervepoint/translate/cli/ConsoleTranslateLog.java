@@ -0,0 +1,66 @@
+package com.nervepoint.translate.cli;
+
+import com.nervepoint.translate.TranslateLog;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Writes engine messages to the console, or to a daemon client. Each line is
+ * prefixed with its level.
+ */
+public class ConsoleTranslateLog implements TranslateLog {
+// ------------------------------ FIELDS ------------------------------
+
+    private final PrintWriter out;
+    private final boolean debug;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public ConsoleTranslateLog(PrintWriter out, boolean debug) {
+        this.out = out;
+        this.debug = debug;
+    }
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface TranslateLog ---------------------
+
+    public boolean isDebugEnabled() {
+        return debug;
+    }
+
+    public void debug(String message) {
+        if (debug) {
+            write("DEBUG", message);
+        }
+    }
+
+    public void info(String message) {
+        write("INFO", message);
+    }
+
+    public void warn(String message) {
+        write("WARN", message);
+    }
+
+    public void error(String message) {
+        write("ERROR", message);
+    }
+
+    public void error(Throwable error) {
+        StringWriter trace = new StringWriter();
+        error.printStackTrace(new PrintWriter(trace));
+        write("ERROR", trace.toString().trim());
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private synchronized void write(String level, String message) {
+        for (String line : message.split("\r?\n")) {
+            out.println(level + " " + line);
+        }
+        out.flush();
+    }
+}
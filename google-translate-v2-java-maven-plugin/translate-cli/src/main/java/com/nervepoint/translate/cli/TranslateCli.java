@@ -0,0 +1,119 @@
+package com.nervepoint.translate.cli;
+
+import com.nervepoint.translate.TranslationEngine;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Command line entry point. Translates in this process, or, when
+ * <code>--port</code> is given and a daemon is listening there, hands the run
+ * to the daemon along with the token the daemon wrote. See
+ * {@link TranslateOptions#USAGE} for the options.
+ */
+public class TranslateCli {
+
+// --------------------------- main() method ---------------------------
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    public static int run(String[] args) {
+        File cwd = new File(System.getProperty("user.dir"));
+        TranslateOptions options;
+        try {
+            options = TranslateOptions.parse(args, cwd);
+        } catch (IllegalArgumentException iae) {
+            System.err.println(iae.getMessage());
+            System.err.println(TranslateOptions.USAGE);
+            return 2;
+        }
+
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out));
+        ConsoleTranslateLog log = new ConsoleTranslateLog(out, options.isDebug());
+
+        if (options.isDaemon()) {
+            try {
+                new TranslateDaemon(log).run(options.getPort() == 0 ? TranslateDaemon.DEFAULT_PORT : options.getPort(),
+                        options.getTokenFile());
+                return 0;
+            } catch (IOException ioe) {
+                log.error(ioe);
+                return 1;
+            }
+        }
+
+        if (options.getPort() != 0) {
+            File tokenFile = options.getTokenFile() == null
+                    ? TranslateDaemon.getDefaultTokenFile(options.getPort()) : options.getTokenFile();
+            try {
+                return runInDaemon(args, cwd, options.getPort(), TranslateDaemon.readToken(tokenFile));
+            } catch (FileNotFoundException fnfe) {
+                if (options.isStop()) {
+                    log.info("No translation daemon token in " + tokenFile);
+                    return 0;
+                }
+                log.info("No translation daemon token in " + tokenFile + ", translating here");
+            } catch (ConnectException ce) {
+                if (options.isStop()) {
+                    log.info("No translation daemon is running on port " + options.getPort());
+                    return 0;
+                }
+                log.info("No translation daemon is running on port " + options.getPort() + ", translating here");
+            } catch (IOException ioe) {
+                log.error(ioe);
+                return 1;
+            }
+        }
+
+        TranslationEngine engine = new TranslationEngine(log);
+        try {
+            options.configure(engine);
+            engine.run();
+            return 0;
+        } catch (IllegalArgumentException iae) {
+            log.error(iae.getMessage());
+            return 2;
+        } catch (Exception e) {
+            log.error(e);
+            return 1;
+        }
+    }
+
+    private static int runInDaemon(String[] args, File cwd, int port, String token) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+            out.println(token);
+            out.println(cwd.getAbsolutePath());
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--port") || args[i].equals("--token-file")) {
+                    i++;
+                } else {
+                    out.println(args[i]);
+                }
+            }
+            out.println();
+            out.flush();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("EXIT ")) {
+                    return Integer.parseInt(line.substring(5));
+                }
+                if (line.startsWith("WARN ") || line.startsWith("ERROR ")) {
+                    System.err.println(line);
+                } else {
+                    System.out.println(line);
+                }
+            }
+            throw new EOFException("Translation daemon closed the connection");
+        } finally {
+            socket.close();
+        }
+    }
+}
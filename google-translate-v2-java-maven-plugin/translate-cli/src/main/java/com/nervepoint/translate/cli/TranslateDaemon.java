@@ -0,0 +1,268 @@
+package com.nervepoint.translate.cli;
+
+import com.nervepoint.translate.BundleCache;
+import com.nervepoint.translate.PatternReplacer;
+import com.nervepoint.translate.TranslateLog;
+import com.nervepoint.translate.TranslationEngine;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long lived process that runs translations for clients on the same machine,
+ * so the JVM start up, class loading, parsed bundles and caches, compiled
+ * patterns and the translation API connections are all paid for once.
+ * <p>
+ * Only the loopback interface is listened on, and as any local user could
+ * connect to that, the daemon writes a random token to a file only its owner
+ * may read. A client sends the token on the first line, its working directory
+ * on the second, then one argument per line, then an empty line. Requests
+ * without the token are refused. The daemon replies with the log of the run, one message per line
+ * prefixed with its level, and finally <code>EXIT &lt;status&gt;</code>.
+ * Sending the single argument <code>--stop</code> stops the daemon.
+ */
+public class TranslateDaemon {
+// ------------------------------ FIELDS ------------------------------
+
+    public final static int DEFAULT_PORT = 8766;
+
+    private final static char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final BundleCache bundleCache = new BundleCache();
+    private final ConcurrentMap<List<String>, PatternReplacer> replacers = new ConcurrentHashMap<List<String>, PatternReplacer>();
+    private final TranslateLog log;
+    private ServerSocket serverSocket;
+    private File tokenFile;
+    private byte[] token;
+    private ExecutorService executor;
+    private volatile boolean running;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public TranslateDaemon(TranslateLog log) {
+        this.log = log;
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * The file the token for a daemon on a port is kept in, when no other is
+     * given.
+     */
+    public static File getDefaultTokenFile(int port) {
+        return new File(System.getProperty("user.home"), ".i18n_daemon_" + port + ".token");
+    }
+
+    /**
+     * Read the token a client must send.
+     */
+    public static String readToken(File tokenFile) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(tokenFile), "US-ASCII"));
+        try {
+            String token = in.readLine();
+            if (token == null) {
+                throw new EOFException("Translation daemon token file " + tokenFile + " is empty");
+            }
+            return token;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeToken(File tokenFile, String token) throws IOException {
+        tokenFile.getAbsoluteFile().getParentFile().mkdirs();
+        Files.deleteIfExists(tokenFile.toPath());
+        try {
+            Files.createFile(tokenFile.toPath(),
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException uoe) {
+            // Not a POSIX file system, so do the best we can
+            Files.createFile(tokenFile.toPath());
+            tokenFile.setReadable(false, false);
+            tokenFile.setWritable(false, false);
+            tokenFile.setReadable(true, true);
+            tokenFile.setWritable(true, true);
+        }
+        Writer out = new OutputStreamWriter(new FileOutputStream(tokenFile), "US-ASCII");
+        try {
+            out.write(token);
+            out.write('\n');
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder bui = new StringBuilder();
+        for (byte b : bytes) {
+            bui.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+        }
+        return bui.toString();
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * The port listened on, once running.
+     */
+    public int getPort() {
+        return serverSocket == null ? 0 : serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accept clients until stopped.
+     *
+     * @param port      port to listen on, or 0 for any free port
+     * @param tokenFile file to write the client token to, or <code>null</code> for the default for the port
+     */
+    public void run(int port, File tokenFile) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        executor = Executors.newCachedThreadPool();
+        running = true;
+        this.tokenFile = tokenFile == null ? getDefaultTokenFile(serverSocket.getLocalPort()) : tokenFile;
+        String newToken = newToken();
+        try {
+            writeToken(this.tokenFile, newToken);
+        } catch (IOException ioe) {
+            executor.shutdown();
+            serverSocket.close();
+            throw ioe;
+        }
+        token = newToken.getBytes("US-ASCII");
+        log.info("Translation daemon listening on port " + serverSocket.getLocalPort() + ", token in " + this.tokenFile);
+        try {
+            while (running) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException se) {
+                    if (!running) {
+                        break;
+                    }
+                    throw se;
+                }
+                executor.execute(new Runnable() {
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            this.tokenFile.delete();
+            log.info("Translation daemon stopped");
+        }
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException ioe) {
+            // Ignore
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+                String clientToken = in.readLine();
+                if (clientToken == null) {
+                    return;
+                }
+                if (!MessageDigest.isEqual(token, clientToken.getBytes("US-ASCII"))) {
+                    log.warn("Refused translation client without the daemon token");
+                    out.println("ERROR Invalid translation daemon token");
+                    out.println("EXIT 2");
+                    out.flush();
+                    return;
+                }
+
+                String cwd = in.readLine();
+                List<String> args = new ArrayList<String>();
+                String line;
+                while ((line = in.readLine()) != null && line.length() > 0) {
+                    args.add(line);
+                }
+                if (cwd == null) {
+                    return;
+                }
+
+                if (args.size() == 1 && args.get(0).equals("--stop")) {
+                    out.println("INFO Stopping translation daemon");
+                    out.println("EXIT 0");
+                    out.flush();
+                    stop();
+                    return;
+                }
+
+                int status = translate(args.toArray(new String[args.size()]), new File(cwd), out);
+                out.println("EXIT " + status);
+                out.flush();
+            } finally {
+                socket.close();
+            }
+        } catch (IOException ioe) {
+            log.warn("Failed to serve translation client. " + ioe.getMessage());
+        }
+    }
+
+    private int translate(String[] args, File cwd, PrintWriter out) {
+        TranslateOptions options;
+        try {
+            options = TranslateOptions.parse(args, cwd);
+        } catch (IllegalArgumentException iae) {
+            out.println("ERROR " + iae.getMessage());
+            return 2;
+        }
+
+        ConsoleTranslateLog runLog = new ConsoleTranslateLog(out, options.isDebug());
+        TranslationEngine engine = new TranslationEngine(runLog);
+        try {
+            options.configure(engine);
+            engine.setBundleCache(bundleCache);
+            engine.setReplacer(getReplacer(options.getNoTranslatePatterns()));
+            long started = System.currentTimeMillis();
+            engine.run();
+            log.info("Translated " + options.getLanguages() + " for " + cwd + " in "
+                    + (System.currentTimeMillis() - started) + "ms (since start, " + bundleCache.getHits()
+                    + " bundle loads from memory and " + bundleCache.getMisses() + " from disk)");
+            return 0;
+        } catch (Exception e) {
+            runLog.error(e);
+            return 1;
+        }
+    }
+
+    private PatternReplacer getReplacer(List<String> patterns) {
+        PatternReplacer replacer = replacers.get(patterns);
+        if (replacer == null) {
+            replacer = new PatternReplacer();
+            for (String p : patterns) {
+                replacer.addPattern(p);
+            }
+            PatternReplacer existing = replacers.putIfAbsent(new ArrayList<String>(patterns), replacer);
+            if (existing != null) {
+                replacer = existing;
+            }
+        }
+        return replacer;
+    }
+}
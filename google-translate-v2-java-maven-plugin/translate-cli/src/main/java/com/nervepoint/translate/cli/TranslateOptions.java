@@ -0,0 +1,329 @@
+package com.nervepoint.translate.cli;
+
+import com.nervepoint.translate.TranslationEngine;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line options for a translation run. Relative paths are resolved
+ * against the directory given when parsing, which for the daemon is the
+ * working directory of the client rather than the daemon.
+ */
+public class TranslateOptions {
+// ------------------------------ FIELDS ------------------------------
+
+    public final static String USAGE = "Usage: translate [options]\n"
+            + "  --languages <list>              comma separated languages to translate to (required)\n"
+            + "  --source <dir>                  source bundles (default src/main/resources)\n"
+            + "  --target <dir>                  where to write translations (default target/classes)\n"
+            + "  --source-language <lang>        language of the source bundles (default en)\n"
+            + "  --cache-dir <dir>               master cache folder (default ~/.i18n_cache)\n"
+            + "  --cache <dir>                   cache folder for these bundles (default <cache-dir>/default)\n"
+            + "  --apikey <key>                  API key (default ${api.key} system property)\n"
+            + "  --backend <name>                translation backend (default google-v2, or fake for a fake key)\n"
+            + "  --include <pattern>             bundles to include, may be repeated\n"
+            + "  --exclude <pattern>             bundles to exclude, may be repeated\n"
+            + "  --recurse\n"
+            + "  --no-translate <regex>          content not to translate, may be repeated\n"
+            + "  --max-time <seconds>            translation time budget\n"
+            + "  --max-chars <count>             translation character budget\n"
+            + "  --segment-threshold <length>    split texts at least this long into sentences\n"
+            + "  --translation-memory <mode>     off, report or apply\n"
+            + "  --translation-memory-threshold <similarity>\n"
+            + "  --retranslate-memory-matches    translate applied memory matches properly when there is budget\n"
+            + "  --compact-cache\n"
+            + "  --remote-cache <url>\n"
+            + "  --remote-cache-token <token>    token needed to store translations in the remote cache\n"
+            + "  --normalize                     normalize white space and unicode before cache lookup\n"
+            + "  --hedge-percentile <percentile> resend requests slower than this percentile of recent latency\n"
+            + "  --hedge-max-rate <fraction>     most requests to resend (default 0.1)\n"
+            + "  --bundle-format <formats>       list of properties, class, binary (default properties)\n"
+            + "  --generated-sources <dir>       where class bundle sources go (default target/generated-sources/translate)\n"
+            + "  --pipeline                      load, translate and write bundles concurrently\n"
+            + "  --load-threads <n>              pipeline threads loading bundles (default 2)\n"
+            + "  --translate-threads <n>         pipeline threads translating (default 4)\n"
+            + "  --write-threads <n>             pipeline threads writing bundles (default 1)\n"
+            + "  --queue-size <n>                bundles waiting per pipeline stage (default 16)\n"
+            + "  --max-in-flight-chars <n>       most untranslated characters in the pipeline (default 200000)\n"
+            + "  --virtual-threads               run the pipeline on virtual threads (Java 21 or later)\n"
+            + "  --max-requests <n>              most requests at once on virtual threads (default 16)\n"
+            + "  --shared-cache-size <bytes>     memory for translations shared between runs (default 0, off)\n"
+            + "  --cache-snapshot <file>         cache snapshot to read beneath the cache folder\n"
+            + "  --progress-interval <seconds>   least time between progress reports (default 10)\n"
+            + "  --parallel-scan                 list source folders on several threads\n"
+            + "  --scan-index <file>             file keeping source folder listings between runs\n"
+            + "  --debug                         log every text translated\n"
+            + "  --daemon                        stay running, serving translation runs on --port\n"
+            + "  --port <port>                   daemon port; other options are run by the daemon if one is listening\n"
+            + "  --stop                          stop the daemon on --port\n"
+            + "  --token-file <file>             file holding the daemon's client token (default ~/.i18n_daemon_<port>.token)";
+
+    private File sourceDirectory;
+    private File targetDirectory;
+    private File masterCacheDirectory;
+    private File cacheDirectory;
+    private String sourceLanguage = "en";
+    private String languages;
+    private String apikey = System.getProperty("api.key");
+    private String backend;
+    private List<String> includes = new ArrayList<String>();
+    private List<String> excludes = new ArrayList<String>();
+    private boolean recurse;
+    private List<String> noTranslatePatterns = new ArrayList<String>();
+    private long maxTranslationTime;
+    private long maxCharactersPerBuild;
+    private int segmentThreshold;
+    private String translationMemory = "off";
+    private float translationMemoryThreshold = 0.9f;
+    private boolean retranslateMemoryMatches;
+    private boolean compactCache;
+    private String remoteCacheUrl;
+    private String remoteCacheToken;
+    private boolean normalizeCacheKeys;
+    private double hedgePercentile;
+    private double hedgeMaxRate = 0.1;
+    private String bundleFormat = "properties";
+    private File generatedSourceDirectory;
+    private boolean pipeline;
+    private int pipelineLoadThreads = 2;
+    private int pipelineTranslateThreads = 4;
+    private int pipelineWriteThreads = 1;
+    private int pipelineQueueSize = 16;
+    private int pipelineMaxInFlightCharacters = 200000;
+    private boolean virtualThreads;
+    private int maxConcurrentRequests = 16;
+    private long sharedCacheSize;
+    private File cacheSnapshot;
+    private long progressInterval = 10;
+    private boolean parallelScan;
+    private File scanIndex;
+    private boolean debug;
+    private boolean daemon;
+    private boolean stop;
+    private int port;
+    private File tokenFile;
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Parse command line arguments.
+     *
+     * @param args    arguments
+     * @param baseDir directory relative paths are resolved against
+     * @throws IllegalArgumentException if the arguments are not valid
+     */
+    public static TranslateOptions parse(String[] args, File baseDir) {
+        TranslateOptions options = new TranslateOptions();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--recurse")) {
+                options.recurse = true;
+            } else if (arg.equals("--compact-cache")) {
+                options.compactCache = true;
+            } else if (arg.equals("--debug")) {
+                options.debug = true;
+            } else if (arg.equals("--retranslate-memory-matches")) {
+                options.retranslateMemoryMatches = true;
+            } else if (arg.equals("--normalize")) {
+                options.normalizeCacheKeys = true;
+            } else if (arg.equals("--pipeline")) {
+                options.pipeline = true;
+            } else if (arg.equals("--virtual-threads")) {
+                options.virtualThreads = true;
+            } else if (arg.equals("--parallel-scan")) {
+                options.parallelScan = true;
+            } else if (arg.equals("--daemon")) {
+                options.daemon = true;
+            } else if (arg.equals("--stop")) {
+                options.stop = true;
+            } else {
+                if (i + 1 >= args.length || !arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown or incomplete option " + arg);
+                }
+                String value = args[++i];
+                if (arg.equals("--source")) {
+                    options.sourceDirectory = resolve(baseDir, value);
+                } else if (arg.equals("--target")) {
+                    options.targetDirectory = resolve(baseDir, value);
+                } else if (arg.equals("--cache-dir")) {
+                    options.masterCacheDirectory = resolve(baseDir, value);
+                } else if (arg.equals("--cache")) {
+                    options.cacheDirectory = resolve(baseDir, value);
+                } else if (arg.equals("--source-language")) {
+                    options.sourceLanguage = value;
+                } else if (arg.equals("--languages")) {
+                    options.languages = value;
+                } else if (arg.equals("--apikey")) {
+                    options.apikey = value;
+                } else if (arg.equals("--backend")) {
+                    options.backend = value;
+                } else if (arg.equals("--include")) {
+                    options.includes.add(value);
+                } else if (arg.equals("--exclude")) {
+                    options.excludes.add(value);
+                } else if (arg.equals("--no-translate")) {
+                    options.noTranslatePatterns.add(value);
+                } else if (arg.equals("--max-time")) {
+                    options.maxTranslationTime = Long.parseLong(value);
+                } else if (arg.equals("--max-chars")) {
+                    options.maxCharactersPerBuild = Long.parseLong(value);
+                } else if (arg.equals("--segment-threshold")) {
+                    options.segmentThreshold = Integer.parseInt(value);
+                } else if (arg.equals("--translation-memory")) {
+                    options.translationMemory = value;
+                } else if (arg.equals("--translation-memory-threshold")) {
+                    options.translationMemoryThreshold = Float.parseFloat(value);
+                } else if (arg.equals("--remote-cache")) {
+                    options.remoteCacheUrl = value;
+                } else if (arg.equals("--remote-cache-token")) {
+                    options.remoteCacheToken = value;
+                } else if (arg.equals("--hedge-percentile")) {
+                    options.hedgePercentile = Double.parseDouble(value);
+                } else if (arg.equals("--hedge-max-rate")) {
+                    options.hedgeMaxRate = Double.parseDouble(value);
+                } else if (arg.equals("--bundle-format")) {
+                    options.bundleFormat = value;
+                } else if (arg.equals("--generated-sources")) {
+                    options.generatedSourceDirectory = resolve(baseDir, value);
+                } else if (arg.equals("--load-threads")) {
+                    options.pipelineLoadThreads = Integer.parseInt(value);
+                } else if (arg.equals("--translate-threads")) {
+                    options.pipelineTranslateThreads = Integer.parseInt(value);
+                } else if (arg.equals("--write-threads")) {
+                    options.pipelineWriteThreads = Integer.parseInt(value);
+                } else if (arg.equals("--queue-size")) {
+                    options.pipelineQueueSize = Integer.parseInt(value);
+                } else if (arg.equals("--max-in-flight-chars")) {
+                    options.pipelineMaxInFlightCharacters = Integer.parseInt(value);
+                } else if (arg.equals("--max-requests")) {
+                    options.maxConcurrentRequests = Integer.parseInt(value);
+                } else if (arg.equals("--shared-cache-size")) {
+                    options.sharedCacheSize = Long.parseLong(value);
+                } else if (arg.equals("--cache-snapshot")) {
+                    options.cacheSnapshot = resolve(baseDir, value);
+                } else if (arg.equals("--progress-interval")) {
+                    options.progressInterval = Long.parseLong(value);
+                } else if (arg.equals("--scan-index")) {
+                    options.scanIndex = resolve(baseDir, value);
+                } else if (arg.equals("--port")) {
+                    options.port = Integer.parseInt(value);
+                } else if (arg.equals("--token-file")) {
+                    options.tokenFile = resolve(baseDir, value);
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+        }
+
+        if (options.sourceDirectory == null) {
+            options.sourceDirectory = resolve(baseDir, "src/main/resources");
+        }
+        if (options.targetDirectory == null) {
+            options.targetDirectory = resolve(baseDir, "target/classes");
+        }
+        if (options.generatedSourceDirectory == null) {
+            options.generatedSourceDirectory = resolve(baseDir, "target/generated-sources/translate");
+        }
+        if (options.masterCacheDirectory == null) {
+            options.masterCacheDirectory = new File(System.getProperty("user.home"), ".i18n_cache");
+        }
+        if (options.cacheDirectory == null) {
+            options.cacheDirectory = new File(options.masterCacheDirectory, "default");
+        }
+        if (options.backend == null) {
+            options.backend = "fake".equals(options.apikey) ? "fake" : "google-v2";
+        }
+        return options;
+    }
+
+    private static File resolve(File baseDir, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(baseDir, path);
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    public String getLanguages() {
+        return languages;
+    }
+
+    public List<String> getNoTranslatePatterns() {
+        return noTranslatePatterns;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public File getTokenFile() {
+        return tokenFile;
+    }
+
+    public boolean isDaemon() {
+        return daemon;
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+    public boolean isStop() {
+        return stop;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Apply these options to an engine.
+     */
+    public void configure(TranslationEngine engine) {
+        if (languages == null) {
+            throw new IllegalArgumentException("--languages is required");
+        }
+        engine.setSourceDirectory(sourceDirectory);
+        engine.setTargetDirectory(targetDirectory);
+        engine.setMasterCacheDirectory(masterCacheDirectory);
+        engine.setCacheDirectory(cacheDirectory);
+        engine.setSourceLanguage(sourceLanguage);
+        engine.setLanguages(languages);
+        engine.setApikey(apikey);
+        engine.setBackendName(backend);
+        if (!includes.isEmpty()) {
+            engine.setIncludes(includes.toArray(new String[includes.size()]));
+        }
+        if (!excludes.isEmpty()) {
+            engine.setExcludes(excludes.toArray(new String[excludes.size()]));
+        }
+        engine.setRecurse(recurse);
+        engine.setNoTranslatePatterns(noTranslatePatterns);
+        engine.setMaxTranslationTime(maxTranslationTime);
+        engine.setMaxCharactersPerBuild(maxCharactersPerBuild);
+        engine.setSegmentThreshold(segmentThreshold);
+        engine.setTranslationMemory(translationMemory);
+        engine.setTranslationMemoryThreshold(translationMemoryThreshold);
+        engine.setRetranslateMemoryMatches(retranslateMemoryMatches);
+        engine.setCompactCache(compactCache);
+        engine.setRemoteCacheUrl(remoteCacheUrl);
+        engine.setRemoteCacheToken(remoteCacheToken);
+        engine.setNormalizeCacheKeys(normalizeCacheKeys);
+        engine.setHedgePercentile(hedgePercentile);
+        engine.setHedgeMaxRate(hedgeMaxRate);
+        engine.setBundleFormat(bundleFormat);
+        engine.setGeneratedSourceDirectory(generatedSourceDirectory);
+        engine.setPipeline(pipeline);
+        engine.setPipelineLoadThreads(pipelineLoadThreads);
+        engine.setPipelineTranslateThreads(pipelineTranslateThreads);
+        engine.setPipelineWriteThreads(pipelineWriteThreads);
+        engine.setPipelineQueueSize(pipelineQueueSize);
+        engine.setPipelineMaxInFlightCharacters(pipelineMaxInFlightCharacters);
+        engine.setVirtualThreads(virtualThreads);
+        engine.setMaxConcurrentRequests(maxConcurrentRequests);
+        engine.setSharedCacheSize(sharedCacheSize);
+        engine.setCacheSnapshot(cacheSnapshot);
+        engine.setProgressInterval(progressInterval);
+        engine.setParallelScan(parallelScan);
+        engine.setScanIndex(scanIndex);
+    }
+}
@@ -0,0 +1,130 @@
+package com.nervepoint.translate.cli;
+
+import junit.framework.TestCase;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TranslateDaemonTest extends TestCase {
+// ------------------------------ FIELDS ------------------------------
+
+    private File root;
+    private File tokenFile;
+    private TranslateDaemon daemon;
+    private Thread thread;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    @Override
+    protected void setUp() throws Exception {
+        root = Files.createTempDirectory("translate-daemon-test").toFile();
+        tokenFile = new File(root, "daemon.token");
+        daemon = new TranslateDaemon(new ConsoleTranslateLog(new PrintWriter(new StringWriter()), false));
+        thread = new Thread() {
+            public void run() {
+                try {
+                    daemon.run(0, tokenFile);
+                } catch (IOException ioe) {
+                    ioe.printStackTrace();
+                }
+            }
+        };
+        thread.start();
+        long until = System.currentTimeMillis() + 10000;
+        while (tokenFile.length() == 0) {
+            assertTrue("Daemon did not start", System.currentTimeMillis() < until);
+            Thread.sleep(10);
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        daemon.stop();
+        thread.join(10000);
+        delete(root);
+    }
+
+    public void testTokenFileIsPrivate() throws Exception {
+        try {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile.toPath())));
+        } catch (UnsupportedOperationException uoe) {
+            // Not a POSIX file system
+        }
+        assertEquals(64, TranslateDaemon.readToken(tokenFile).length());
+    }
+
+    public void testRequestsWithoutTokenAreRefused() throws Exception {
+        List<String> reply = send("not the token", root.getPath(), "--stop");
+        assertEquals("ERROR Invalid translation daemon token", reply.get(0));
+        assertEquals("EXIT 2", reply.get(reply.size() - 1));
+
+        reply = send("", root.getPath(), "--languages", "fr");
+        assertEquals("EXIT 2", reply.get(reply.size() - 1));
+
+        // Still running
+        thread.join(200);
+        assertTrue(thread.isAlive());
+    }
+
+    public void testTranslateAndStop() throws Exception {
+        File source = new File(root, "src/main/resources");
+        source.mkdirs();
+        Writer out = new OutputStreamWriter(new FileOutputStream(new File(source, "messages_en.properties")), "ISO-8859-1");
+        try {
+            out.write("hello=Hello\n");
+        } finally {
+            out.close();
+        }
+
+        String token = TranslateDaemon.readToken(tokenFile);
+        List<String> reply = send(token, root.getPath(), "--languages", "fr", "--backend", "fake",
+                "--cache-dir", new File(root, "cache").getPath());
+        assertEquals(reply.toString(), "EXIT 0", reply.get(reply.size() - 1));
+        assertTrue(new File(root, "target/classes/messages_fr.properties").exists());
+
+        reply = send(token, root.getPath(), "--stop");
+        assertEquals("EXIT 0", reply.get(reply.size() - 1));
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+        assertFalse(tokenFile.exists());
+    }
+
+    private List<String> send(String token, String cwd, String... args) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort());
+        try {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+            out.println(token);
+            out.println(cwd);
+            for (String arg : args) {
+                out.println(arg);
+            }
+            out.println();
+            out.flush();
+
+            List<String> reply = new ArrayList<String>();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            String line;
+            while ((line = in.readLine()) != null) {
+                reply.add(line);
+            }
+            return reply;
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,73 @@
+package com.nervepoint.translate;
+
+import com.nervepoint.translate.runtime.BinaryBundle;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes a translated bundle in the binary format read by
+ * {@link BinaryBundle}.
+ */
+public class BinaryBundleWriter {
+
+    private BinaryBundleWriter() {
+    }
+
+    public static void write(File file, Map<Object, Object> entries) throws IOException {
+        List<String> keys = new ArrayList<String>();
+        for (Object key : entries.keySet()) {
+            keys.add((String) key);
+        }
+        Collections.sort(keys, new Comparator<String>() {
+            public int compare(String o1, String o2) {
+                int h1 = o1.hashCode();
+                int h2 = o2.hashCode();
+                return h1 < h2 ? -1 : (h1 > h2 ? 1 : o1.compareTo(o2));
+            }
+        });
+
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        Map<String, int[]> interned = new HashMap<String, int[]>();
+        ByteArrayOutputStream index = new ByteArrayOutputStream(keys.size() * BinaryBundle.ENTRY_SIZE);
+        DataOutputStream indexOut = new DataOutputStream(index);
+        for (String key : keys) {
+            int[] k = intern(key, table, interned);
+            int[] v = intern((String) entries.get(key), table, interned);
+            indexOut.writeInt(key.hashCode());
+            indexOut.writeInt(k[0]);
+            indexOut.writeInt(k[1]);
+            indexOut.writeInt(v[0]);
+            indexOut.writeInt(v[1]);
+        }
+
+        file.getParentFile().mkdirs();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(BinaryBundle.MAGIC);
+            out.writeInt(BinaryBundle.VERSION);
+            out.writeInt(keys.size());
+            out.writeInt(BinaryBundle.HEADER_SIZE + index.size());
+            index.writeTo(out);
+            table.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Add a string to the table, unless it is already there.
+     *
+     * @return offset and length of the string in the table
+     */
+    private static int[] intern(String s, ByteArrayOutputStream table, Map<String, int[]> interned) throws IOException {
+        int[] location = interned.get(s);
+        if (location == null) {
+            byte[] bytes = s.getBytes("UTF-8");
+            location = new int[]{table.size(), bytes.length};
+            table.write(bytes);
+            interned.put(s, location);
+        }
+        return location;
+    }
+}
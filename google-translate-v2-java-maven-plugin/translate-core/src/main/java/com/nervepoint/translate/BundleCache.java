@@ -0,0 +1,156 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps parsed properties files in memory between runs of a long lived
+ * process (see the daemon mode of the command line tool, and the shared
+ * cache of the engine), so unchanged bundles and caches are not read and
+ * parsed again. A file is re-read when its size or modification time changes,
+ * and files written by the engine are dropped straight away. Callers always
+ * get their own copy, which they may change.
+ * <p/>
+ * The cache may be bounded by an estimate of the memory its files take, in
+ * which case the least recently used files are dropped first.
+ */
+public class BundleCache {
+// ------------------------------ FIELDS ------------------------------
+
+    private static BundleCache shared;
+
+    private final LinkedHashMap<File, Entry> entries = new LinkedHashMap<File, Entry>(64, 0.75f, true);
+    private long maxWeight;
+    private long weight;
+
+    private int hits;
+    private int misses;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public BundleCache() {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxWeight most memory, in bytes, for the files kept
+     */
+    public BundleCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Get the cache shared by everything in this JVM, creating it the first
+     * time. A different size given later resizes it.
+     *
+     * @param maxWeight most memory, in bytes, for the files kept
+     */
+    public static synchronized BundleCache getShared(long maxWeight) {
+        if (shared == null) {
+            shared = new BundleCache(maxWeight);
+        } else {
+            shared.setMaxWeight(maxWeight);
+        }
+        return shared;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    public PropertiesWithoutComments load(File file) throws IOException {
+        file = file.getAbsoluteFile();
+        long modified = file.lastModified();
+        long length = file.length();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(file);
+            if (entry != null && (entry.modified != modified || entry.length != length)) {
+                entry = null;
+            }
+            if (entry == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+        }
+        if (entry == null) {
+            entry = new Entry(CacheFiles.load(file), modified, length);
+            synchronized (this) {
+                Entry previous = entries.put(file, entry);
+                if (previous != null) {
+                    weight -= previous.weight;
+                }
+                weight += entry.weight;
+                evict();
+            }
+        }
+        PropertiesWithoutComments copy = new PropertiesWithoutComments();
+        copy.putAll(entry.properties);
+        return copy;
+    }
+
+    public synchronized void invalidate(File file) {
+        Entry entry = entries.remove(file.getAbsoluteFile());
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+        evict();
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<File, Entry>> it = entries.entrySet().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            weight -= it.next().getValue().weight;
+            it.remove();
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private static class Entry {
+        private final PropertiesWithoutComments properties;
+        private final long modified;
+        private final long length;
+        private final long weight;
+
+        private Entry(PropertiesWithoutComments properties, long modified, long length) {
+            this.properties = properties;
+            this.modified = modified;
+            this.length = length;
+            long w = 0;
+            for (Map.Entry<Object, Object> en : properties.entrySet()) {
+                w += TranslationCache.weigh(String.valueOf(en.getKey()), String.valueOf(en.getValue()));
+            }
+            this.weight = w;
+        }
+    }
+}
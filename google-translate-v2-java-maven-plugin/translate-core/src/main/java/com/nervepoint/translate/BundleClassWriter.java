@@ -0,0 +1,194 @@
+package com.nervepoint.translate;
+
+import javax.lang.model.SourceVersion;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes a translated bundle as the Java source of a
+ * {@link java.util.ResourceBundle} subclass, so loading a locale at runtime is
+ * class loading rather than parsing a properties file.
+ * <p>
+ * Nothing is built when the bundle is loaded. Lookups are a
+ * <code>switch</code> on the key, which the compiler turns into a jump on the
+ * (cached) hash code of the key followed by a single <code>equals</code>. To
+ * stay inside the class file limits on method size, keys are spread over
+ * several methods by hash code.
+ */
+public class BundleClassWriter {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * Keys handled by each generated method.
+     */
+    private final static int KEYS_PER_METHOD = 500;
+
+    /**
+     * Longest string constant a class file can hold is 65535 bytes of
+     * modified UTF-8, which is at least this many characters.
+     */
+    private final static int MAX_CONSTANT_LENGTH = 65535 / 3;
+
+    /**
+     * Each key and value uses two constant pool entries, and the pool holds
+     * at most 65535.
+     */
+    private final static int MAX_KEYS = 15000;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    private BundleClassWriter() {
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Write the source for a bundle class.
+     *
+     * @param sourceRoot  root of the generated source tree
+     * @param packagePath package as a path, e.g. <code>com/acme/i18n</code>, or an empty string
+     * @param className   class name, e.g. <code>messages_fr</code>
+     * @param entries     keys and values of the bundle
+     * @return the file written, or <code>null</code> if the bundle cannot be
+     * a class (the names are not valid Java names, or it is too large)
+     */
+    public static File write(File sourceRoot, String packagePath, String className, Map<Object, Object> entries)
+            throws IOException {
+        String packageName = packagePath.replace('/', '.').replace('\\', '.');
+        if (!SourceVersion.isName(className) || (packageName.length() > 0 && !SourceVersion.isName(packageName))) {
+            return null;
+        }
+        if (entries.size() > MAX_KEYS) {
+            return null;
+        }
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            if (((String) entry.getKey()).length() > MAX_CONSTANT_LENGTH
+                    || ((String) entry.getValue()).length() > MAX_CONSTANT_LENGTH) {
+                return null;
+            }
+        }
+
+        List<String> keys = new ArrayList<String>();
+        for (Object key : entries.keySet()) {
+            keys.add((String) key);
+        }
+        Collections.sort(keys);
+
+        int methods = Math.max(1, (keys.size() + KEYS_PER_METHOD - 1) / KEYS_PER_METHOD);
+        List<List<String>> buckets = new ArrayList<List<String>>();
+        for (int i = 0; i < methods; i++) {
+            buckets.add(new ArrayList<String>());
+        }
+        for (String key : keys) {
+            buckets.get(bucket(key, methods)).add(key);
+        }
+
+        File dir = packagePath.length() == 0 ? sourceRoot : new File(sourceRoot, packagePath);
+        dir.mkdirs();
+        File file = new File(dir, className + ".java");
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write("// Auto generated by Google Translate V2 API maven plugin\n");
+            if (packageName.length() > 0) {
+                out.write("package " + packageName + ";\n");
+            }
+            out.write("\n");
+            out.write("public class " + className + " extends java.util.ResourceBundle {\n\n");
+
+            out.write("    protected Object handleGetObject(String key) {\n");
+            if (methods == 1) {
+                out.write("        return get0(key);\n");
+            } else {
+                out.write("        switch ((key.hashCode() & 0x7fffffff) % " + methods + ") {\n");
+                for (int i = 0; i < methods; i++) {
+                    out.write("            case " + i + ": return get" + i + "(key);\n");
+                }
+                out.write("            default: return null;\n");
+                out.write("        }\n");
+            }
+            out.write("    }\n\n");
+
+            out.write("    protected java.util.Set<String> handleKeySet() {\n");
+            out.write("        java.util.Set<String> keys = new java.util.HashSet<String>();\n");
+            for (int i = 0; i < methods; i++) {
+                out.write("        addKeys" + i + "(keys);\n");
+            }
+            out.write("        return keys;\n");
+            out.write("    }\n\n");
+
+            out.write("    public java.util.Enumeration<String> getKeys() {\n");
+            out.write("        java.util.Set<String> keys = handleKeySet();\n");
+            out.write("        if (parent != null) {\n");
+            out.write("            keys.addAll(java.util.Collections.list(parent.getKeys()));\n");
+            out.write("        }\n");
+            out.write("        return java.util.Collections.enumeration(keys);\n");
+            out.write("    }\n");
+
+            for (int i = 0; i < methods; i++) {
+                out.write("\n    private static Object get" + i + "(String key) {\n");
+                out.write("        switch (key) {\n");
+                for (String key : buckets.get(i)) {
+                    out.write("            case " + literal(key) + ": return " + literal((String) entries.get(key)) + ";\n");
+                }
+                out.write("            default: return null;\n");
+                out.write("        }\n");
+                out.write("    }\n");
+
+                out.write("\n    private static void addKeys" + i + "(java.util.Set<String> keys) {\n");
+                for (String key : buckets.get(i)) {
+                    out.write("        keys.add(" + literal(key) + ");\n");
+                }
+                out.write("    }\n");
+            }
+            out.write("}\n");
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static int bucket(String key, int methods) {
+        return (key.hashCode() & 0x7fffffff) % methods;
+    }
+
+    /**
+     * Quote a string as a Java literal. Everything outside printable ASCII is
+     * escaped, so the source is the same whatever encoding it is compiled
+     * with. Control characters use octal escapes, as a unicode escape of a
+     * line break would end the literal.
+     */
+    static String literal(String s) {
+        StringBuilder b = new StringBuilder(s.length() + 2);
+        b.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    b.append("\\\"");
+                    break;
+                case '\\':
+                    b.append("\\\\");
+                    break;
+                case '\n':
+                    b.append("\\n");
+                    break;
+                case '\r':
+                    b.append("\\r");
+                    break;
+                case '\t':
+                    b.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        b.append(String.format("\\%03o", (int) c));
+                    } else if (c > 0x7e) {
+                        b.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        b.append(c);
+                    }
+            }
+        }
+        b.append('"');
+        return b.toString();
+    }
+}
@@ -0,0 +1,447 @@
+package com.nervepoint.translate;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Pattern;
+
+/**
+ * Finds source bundles under a folder using the same Ant style include and
+ * exclude patterns as plexus <code>DirectoryScanner</code>
+ * (<code>**</code>, <code>*</code> and <code>?</code>), but with the patterns
+ * compiled once, sub-folders no include could match or an exclude covers
+ * left out altogether, and optionally several folders listed at once.
+ * <p/>
+ * The names in each folder are kept in an index along with the folder's
+ * modification time, so a folder that hasn't changed since the last scan is
+ * not listed again (a file being added, removed or renamed changes the time
+ * of its folder, a file being edited does not, which doesn't matter here).
+ * The index can be saved to a file to be used by later builds. Folders a
+ * scan no longer reaches (removed, or no longer wanted) are dropped from it.
+ */
+public class BundleScanner {
+// ------------------------------ FIELDS ------------------------------
+
+    public final static int MAGIC = 0x54425331;
+    public final static int VERSION = 1;
+
+    /**
+     * Folders changed this close to being listed might change again without
+     * their time changing, on file systems that only keep whole seconds.
+     */
+    private final static long TIME_RESOLUTION = 2000;
+
+    private final List<Pattern> includes = new ArrayList<Pattern>();
+    private final List<Pattern[]> includeSegments = new ArrayList<Pattern[]>();
+    private final List<Pattern> excludes = new ArrayList<Pattern>();
+    private final List<Pattern> excludedFolders = new ArrayList<Pattern>();
+    private final Map<String, Listing> index = new ConcurrentHashMap<String, Listing>();
+    private int parallelism = 1;
+    private File indexFile;
+    private boolean indexLoaded;
+    private volatile boolean indexChanged;
+
+    private int listed;
+    private int reused;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public BundleScanner(String[] includes, String[] excludes) {
+        for (String include : includes) {
+            String pattern = normalize(include);
+            this.includes.add(compile(pattern));
+            String[] segments = pattern.split("/");
+            Pattern[] compiled = new Pattern[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                compiled[i] = segments[i].equals("**") ? null : compile(segments[i]);
+            }
+            includeSegments.add(compiled);
+        }
+        if (excludes != null) {
+            for (String exclude : excludes) {
+                String pattern = normalize(exclude);
+                this.excludes.add(compile(pattern));
+                if (pattern.equals("**")) {
+                    excludedFolders.add(Pattern.compile(".*"));
+                } else if (pattern.endsWith("/**")) {
+                    excludedFolders.add(compile(pattern.substring(0, pattern.length() - 3)));
+                }
+            }
+        }
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Patterns may use either separator, and one ending with a separator
+     * means everything beneath, as with <code>DirectoryScanner</code>.
+     */
+    static String normalize(String pattern) {
+        String p = pattern.trim().replace('\\', '/');
+        if (p.endsWith("/")) {
+            p += "**";
+        }
+        return p;
+    }
+
+    static Pattern compile(String pattern) {
+        StringBuilder b = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            if (pattern.startsWith("**/", i)) {
+                b.append("(?:.*/)?");
+                i += 3;
+            } else if (pattern.startsWith("**", i)) {
+                b.append(".*");
+                i += 2;
+            } else {
+                char c = pattern.charAt(i++);
+                if (c == '*') {
+                    b.append("[^/]*");
+                } else if (c == '?') {
+                    b.append("[^/]");
+                } else if (Character.isLetterOrDigit(c)) {
+                    b.append(c);
+                } else {
+                    b.append('\\').append(c);
+                }
+            }
+        }
+        return Pattern.compile(b.toString());
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    /**
+     * @param parallelism number of folders listed at once, one lists them in
+     *                    the calling thread
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * File to load the index from before the first scan, and save it to after
+     * each scan that changed it. Without one the index is only kept in memory
+     * for as long as the scanner.
+     */
+    public void setIndexFile(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * @return number of folders listed by the last scan
+     */
+    public int getListed() {
+        return listed;
+    }
+
+    /**
+     * @return number of folders whose names were taken from the index by the
+     *         last scan
+     */
+    public int getReused() {
+        return reused;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * @return paths of the included files relative to the folder, with the
+     *         platform separator, sorted
+     */
+    public String[] scan(File baseDir) throws IOException {
+        if (!indexLoaded) {
+            indexLoaded = true;
+            loadIndex();
+        }
+        final Queue<String> found = new ConcurrentLinkedQueue<String>();
+        final Queue<Boolean> visits = new ConcurrentLinkedQueue<Boolean>();
+        final Set<String> visited = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        Path rootDir = baseDir.getAbsoluteFile().toPath();
+        Folder root = new Folder(rootDir, "", found, visits, visited);
+        if (parallelism > 1) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(root);
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            root.compute();
+        }
+
+        listed = reused = 0;
+        for (Boolean visit : visits) {
+            if (visit) {
+                listed++;
+            } else {
+                reused++;
+            }
+        }
+        prune(rootDir, visited);
+        if (indexChanged && indexFile != null) {
+            saveIndex();
+        }
+
+        String[] included = found.toArray(new String[found.size()]);
+        Arrays.sort(included);
+        for (int i = 0; i < included.length; i++) {
+            included[i] = included[i].replace('/', File.separatorChar);
+        }
+        return included;
+    }
+
+    boolean isIncluded(String path) {
+        return matches(includes, path) && !matches(excludes, path);
+    }
+
+    /**
+     * Whether anything beneath a folder could be included. A pattern can only
+     * match beneath it if the folder's path matches the pattern's leading
+     * names, up to the first <code>**</code>.
+     */
+    boolean isWanted(String folder) {
+        if (matches(excludedFolders, folder)) {
+            return false;
+        }
+        String[] names = folder.split("/");
+        for (Pattern[] segments : includeSegments) {
+            if (couldMatchBeneath(segments, names)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean couldMatchBeneath(Pattern[] segments, String[] names) {
+        for (int i = 0; i < names.length; i++) {
+            if (i >= segments.length) {
+                return false;
+            }
+            if (segments[i] == null) {
+                return true;
+            }
+            if (!segments[i].matcher(names[i]).matches()) {
+                return false;
+            }
+        }
+        return segments.length > names.length;
+    }
+
+    private static boolean matches(List<Pattern> patterns, String path) {
+        for (Pattern p : patterns) {
+            if (p.matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drop the folders beneath a scanned folder that the scan didn't reach,
+     * leaving those of other folders alone.
+     */
+    private void prune(Path rootDir, Set<String> visited) {
+        for (Iterator<String> it = index.keySet().iterator(); it.hasNext(); ) {
+            String key = it.next();
+            if (!visited.contains(key) && Paths.get(key).startsWith(rootDir)) {
+                it.remove();
+                indexChanged = true;
+            }
+        }
+    }
+
+    /**
+     * Get the names in a folder, from the index if the folder hasn't changed
+     * since it was last listed.
+     *
+     * @return the listing, or <code>null</code> if the folder can't be read
+     */
+    private Listing list(Path dir, Queue<Boolean> visits, Set<String> visited) {
+        String key = dir.toString();
+        long modified;
+        try {
+            modified = Files.readAttributes(dir, BasicFileAttributes.class).lastModifiedTime().toMillis();
+        } catch (IOException ioe) {
+            return null;
+        }
+        Listing listing = index.get(key);
+        if (listing != null && listing.modified == modified && modified < listing.listed - TIME_RESOLUTION) {
+            visits.add(Boolean.FALSE);
+            visited.add(key);
+            return listing;
+        }
+
+        List<String> files = new ArrayList<String>();
+        List<String> folders = new ArrayList<String>();
+        long now = System.currentTimeMillis();
+        try {
+            DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+            try {
+                for (Path p : stream) {
+                    if (Files.isDirectory(p)) {
+                        folders.add(p.getFileName().toString());
+                    } else {
+                        files.add(p.getFileName().toString());
+                    }
+                }
+            } finally {
+                stream.close();
+            }
+        } catch (IOException ioe) {
+            /* Unreadable folders are passed over, as DirectoryScanner does */
+            return null;
+        }
+        listing = new Listing(modified, now, files.toArray(new String[files.size()]),
+                folders.toArray(new String[folders.size()]));
+        index.put(key, listing);
+        indexChanged = true;
+        visits.add(Boolean.TRUE);
+        visited.add(key);
+        return listing;
+    }
+
+    private void loadIndex() throws IOException {
+        if (indexFile == null || !indexFile.exists()) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 65536));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long modified = in.readLong();
+                long listed = in.readLong();
+                index.put(key, new Listing(modified, listed, readNames(in), readNames(in)));
+            }
+        } catch (EOFException eofe) {
+            /* A damaged index is rebuilt */
+            index.clear();
+        } finally {
+            in.close();
+        }
+    }
+
+    private void saveIndex() throws IOException {
+        File parent = indexFile.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        File tmp = File.createTempFile("." + indexFile.getName(), ".tmp", parent);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 65536));
+            try {
+                Map<String, Listing> entries = new TreeMap<String, Listing>(index);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Listing> en : entries.entrySet()) {
+                    out.writeUTF(en.getKey());
+                    out.writeLong(en.getValue().modified);
+                    out.writeLong(en.getValue().listed);
+                    writeNames(out, en.getValue().files);
+                    writeNames(out, en.getValue().folders);
+                }
+            } finally {
+                out.close();
+            }
+            try {
+                Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            indexChanged = false;
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private static String[] readNames(DataInputStream in) throws IOException {
+        String[] names = new String[in.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = in.readUTF();
+        }
+        return names;
+    }
+
+    private static void writeNames(DataOutputStream out, String[] names) throws IOException {
+        out.writeInt(names.length);
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private static class Listing {
+        final long modified;
+        final long listed;
+        final String[] files;
+        final String[] folders;
+
+        Listing(long modified, long listed, String[] files, String[] folders) {
+            this.modified = modified;
+            this.listed = listed;
+            this.files = files;
+            this.folders = folders;
+        }
+    }
+
+    private class Folder extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path dir;
+        private final String path;
+        private final Queue<String> found;
+        private final Queue<Boolean> visits;
+        private final Set<String> visited;
+
+        Folder(Path dir, String path, Queue<String> found, Queue<Boolean> visits, Set<String> visited) {
+            this.dir = dir;
+            this.path = path;
+            this.found = found;
+            this.visits = visits;
+            this.visited = visited;
+        }
+
+        @Override
+        protected void compute() {
+            Listing listing = list(dir, visits, visited);
+            if (listing == null) {
+                return;
+            }
+            String prefix = path.equals("") ? "" : path + "/";
+            for (String name : listing.files) {
+                if (isIncluded(prefix + name)) {
+                    found.add(prefix + name);
+                }
+            }
+            List<Folder> folders = new ArrayList<Folder>();
+            for (String name : listing.folders) {
+                if (isWanted(prefix + name)) {
+                    folders.add(new Folder(dir.resolve(name), prefix + name, found, visits, visited));
+                }
+            }
+            if (parallelism > 1) {
+                invokeAll(folders);
+            } else {
+                for (Folder folder : folders) {
+                    folder.compute();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a source directory (and its sub-directories) for changes to
+ * <code>.properties</code> files. Changes arriving close together, as when an
+ * editor saves through a temporary file, are passed on as one set.
+ */
+public class BundleWatcher {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * How long to wait for more changes before passing them on.
+     */
+    private final static long QUIET_MILLIS = 50;
+
+    private final TranslateLog log;
+    private final Path directory;
+    private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+    private WatchService watchService;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public BundleWatcher(TranslateLog log, File directory) {
+        this.log = log;
+        this.directory = directory.getAbsoluteFile().toPath();
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Watch until the thread is interrupted or {@link #close()} is called.
+     *
+     * @param listener told about each set of changes
+     */
+    public void watch(Listener listener) throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        try {
+            registerAll(directory);
+            log.info("Watching " + directory + " for changes");
+            while (true) {
+                WatchKey key;
+                try {
+                    key = watchService.take();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ClosedWatchServiceException cwse) {
+                    return;
+                }
+
+                Set<String> changed = new TreeSet<String>();
+                boolean overflow = false;
+                while (key != null) {
+                    overflow |= collect(key, changed);
+                    try {
+                        key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (ClosedWatchServiceException cwse) {
+                        return;
+                    }
+                }
+
+                if (overflow) {
+                    listener.changed(null);
+                } else if (!changed.isEmpty()) {
+                    listener.changed(changed);
+                }
+            }
+        } finally {
+            close();
+        }
+    }
+
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private boolean collect(WatchKey key, Set<String> changed) throws IOException {
+        Path dir = keys.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            if (dir == null) {
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                registerAll(path);
+                // Anything written before the directory was registered
+                overflow = true;
+            } else if (path.getFileName().toString().endsWith(".properties")) {
+                changed.add(directory.relativize(path).toString().replace(File.separatorChar, '/'));
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+        return overflow;
+    }
+
+    private void registerAll(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                keys.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    public interface Listener {
+
+        /**
+         * Called with the changed files, relative to the watched directory
+         * and using <code>/</code> as the separator, or <code>null</code> if
+         * changes may have been missed and everything should be looked at.
+         */
+        void changed(Set<String> files) throws IOException;
+    }
+}
@@ -0,0 +1,247 @@
+package com.nervepoint.translate;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Removes cache entries for keys that no longer exist in the source bundle.
+ * Keys that still exist in the bundle on any of the given git refs (branches
+ * or tags) are kept too, so caches shared between branches aren't stripped of
+ * entries that another branch still needs. Given a segmenter, cached
+ * sentences of long texts are only kept while they are still sentences of
+ * their text.
+ */
+public class CacheCompactor {
+// ------------------------------ FIELDS ------------------------------
+
+    private final TranslateLog log;
+    private final List<String> keepRefs;
+    private File gitRoot;
+    private boolean refsChecked;
+    private Segmenter segmenter;
+    private PatternReplacer replacer;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public CacheCompactor(TranslateLog log, List<String> keepRefs) {
+        this.log = log;
+        this.keepRefs = keepRefs == null ? Collections.<String>emptyList() : keepRefs;
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    /**
+     * Remove cached sentences that are no longer sentences of their text, as
+     * split by the segmenter once the replacer has protected any
+     * untranslatable content. Without a segmenter, sentences are kept for as
+     * long as their key is live.
+     */
+    public void setSegmenter(Segmenter segmenter, PatternReplacer replacer) {
+        this.segmenter = segmenter;
+        this.replacer = replacer;
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Find the source bundle a cache file was generated from. Cache files are
+     * named <code>&lt;base&gt;_&lt;lang&gt;.properties</code>, and the source is
+     * either <code>&lt;base&gt;_&lt;sourceLanguage&gt;.properties</code> or
+     * <code>&lt;base&gt;.properties</code>. As both the base name and the
+     * language may contain underscores, every way of splitting the name is
+     * tried.
+     *
+     * @param sourceDir      top of the source bundles
+     * @param path           path of the cache file within the cache folder, separated by '/'
+     * @param sourceLanguage language of the source bundles
+     * @param languages      languages currently translated to
+     * @return the source bundle, which only fails to exist when the cache file
+     *         is for one of the given languages, so the bundle is known to have
+     *         been removed; or <code>null</code> if the source could not be
+     *         worked out for certain
+     */
+    public static File findSourceFile(File sourceDir, String path, String sourceLanguage,
+                                      Collection<String> languages) {
+        int lidx = path.lastIndexOf('/');
+        File dir = lidx == -1 ? sourceDir : new File(sourceDir, path.substring(0, lidx));
+        String name = path.substring(lidx + 1, path.length() - ".properties".length());
+
+        File configured = null;
+        List<File> existing = new ArrayList<File>();
+        for (int idx = name.indexOf('_'); idx > 0; idx = name.indexOf('_', idx + 1)) {
+            String base = name.substring(0, idx);
+            File sourceFile = new File(dir, base + "_" + sourceLanguage + ".properties");
+            if (!sourceFile.exists()) {
+                sourceFile = new File(dir, base + ".properties");
+            }
+            if (sourceFile.exists()) {
+                existing.add(sourceFile);
+            }
+            if (languages.contains(name.substring(idx + 1))) {
+                configured = sourceFile;
+            }
+        }
+
+        if (existing.size() == 1 && (configured == null || configured.equals(existing.get(0)))) {
+            return existing.get(0);
+        }
+        if (existing.isEmpty() && configured != null) {
+            return configured;
+        }
+        return null;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Get all the keys that should be kept for a source bundle.
+     *
+     * @param sourceFile       source bundle
+     * @param sourceProperties current contents of the bundle, or null if it does not exist
+     */
+    public Set<String> getLiveKeys(File sourceFile, PropertiesWithoutComments sourceProperties) throws IOException {
+        Set<String> live = new HashSet<String>();
+        if (sourceProperties != null) {
+            addLiveKeys(sourceProperties, live);
+        }
+        if (!keepRefs.isEmpty() && !refsChecked) {
+            checkRefs(getGitRoot(sourceFile.getAbsoluteFile().getParentFile()));
+        }
+        for (String ref : keepRefs) {
+            addLiveKeys(loadFromRef(ref, sourceFile), live);
+        }
+        return live;
+    }
+
+    private void addLiveKeys(PropertiesWithoutComments properties, Set<String> live) throws IOException {
+        for (String name : properties.stringPropertyNames()) {
+            live.add(name);
+            if (segmenter != null) {
+                String processed = replacer.preProcess(
+                        new String(properties.getProperty(name).getBytes("ISO-8859-1"), "UTF-8"));
+                for (Segmenter.Segment segment : segmenter.split(processed)) {
+                    live.add(Segmenter.segmentKey(name, CacheFiles.hash(segment.getText())));
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the entries of a cache that do not belong to a live key. Cached
+     * sentences belong to the key they were taken from, and with a segmenter
+     * must also be one of the sentences of its current text.
+     *
+     * @return number of entries removed
+     */
+    public int compact(PropertiesWithoutComments cached, Set<String> liveKeys) {
+        int removed = 0;
+        for (String name : cached.stringPropertyNames()) {
+            boolean live = segmenter != null && Segmenter.isSegmentKey(name)
+                    ? liveKeys.contains(name) : liveKeys.contains(Segmenter.baseKey(name));
+            if (!live) {
+                log.debug("Removing stale cache entry " + name);
+                cached.remove(name);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Make sure every ref to keep exists, as a missing one (mistyped, or not
+     * fetched by a shallow clone) would otherwise look like a ref without any
+     * of the bundles, and their entries would be removed.
+     */
+    private synchronized void checkRefs(File root) throws IOException {
+        if (refsChecked) {
+            return;
+        }
+        for (String ref : keepRefs) {
+            Process process = git(root, "rev-parse", "--verify", "--quiet", ref + "^{commit}");
+            process.getOutputStream().close();
+            readFully(process.getInputStream());
+            String error = new String(readFully(process.getErrorStream()), "UTF-8").trim();
+            if (waitFor(process) != 0) {
+                throw new IOException("Git ref " + ref + " in keepRefs does not exist in " + root
+                        + (error.length() > 0 ? ": " + error : ""));
+            }
+        }
+        refsChecked = true;
+    }
+
+    private PropertiesWithoutComments loadFromRef(String ref, File sourceFile) throws IOException {
+        PropertiesWithoutComments p = new PropertiesWithoutComments();
+        File root = getGitRoot(sourceFile.getAbsoluteFile().getParentFile());
+        String path = root.toURI().relativize(sourceFile.getAbsoluteFile().toURI()).getPath();
+
+        Process process = git(root, "show", ref + ":" + path);
+        process.getOutputStream().close();
+        byte[] content = readFully(process.getInputStream());
+        String error = new String(readFully(process.getErrorStream()), "UTF-8").trim();
+        if (waitFor(process) != 0) {
+            /*
+             * Only a path that git says is not in the ref is taken as absent,
+             * anything else could remove entries the ref still needs
+             */
+            if (error.contains("does not exist") || error.contains("exists on disk, but not in")) {
+                log.debug(path + " does not exist in " + ref);
+                return p;
+            }
+            throw new IOException("Could not read " + path + " from git ref " + ref
+                    + (error.length() > 0 ? ": " + error : ""));
+        }
+        p.load(new ByteArrayInputStream(content));
+        return p;
+    }
+
+    private static Process git(File dir, String... args) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        ProcessBuilder builder = new ProcessBuilder(command).directory(dir);
+        // Messages are checked, so must not be translated
+        builder.environment().put("LC_ALL", "C");
+        return builder.start();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int read;
+            while ((read = in.read(buf)) != -1) {
+                out.write(buf, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static int waitFor(Process process) throws IOException {
+        try {
+            return process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for git");
+        }
+    }
+
+    private File getGitRoot(File dir) throws IOException {
+        if (gitRoot == null) {
+            Process process = git(dir, "rev-parse", "--show-toplevel");
+            process.getOutputStream().close();
+            BufferedReader r = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+            try {
+                String line = r.readLine();
+                if (line == null) {
+                    throw new IOException(dir + " is not in a git repository, so keepRefs cannot be used");
+                }
+                gitRoot = new File(line.trim()).getCanonicalFile();
+            } finally {
+                r.close();
+            }
+        }
+        return gitRoot;
+    }
+}
@@ -0,0 +1,216 @@
+package com.nervepoint.translate;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes cache files so that several builds can share them safely, whether
+ * they are in different processes or in the same one (e.g. <code>mvn -T</code>).
+ * <p>
+ * Rather than overwriting the file with what was loaded earlier, only the
+ * changes made since then are applied to whatever the file contains now,
+ * while holding a lock. The result is written to a temporary file and moved
+ * into place, so readers never see a partly written file and need no lock.
+ */
+public class CacheFiles {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * File locks are held by the whole JVM, so threads in the same process
+     * need their own lock as well.
+     */
+    private final static ConcurrentMap<String, Object> LOCKS = new ConcurrentHashMap<String, Object>();
+
+    private final static char[] HEX = "0123456789abcdef".toCharArray();
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    private CacheFiles() {
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Load a properties file. A file that does not exist gives empty
+     * properties.
+     */
+    public static PropertiesWithoutComments load(File path) throws IOException {
+        PropertiesWithoutComments p = new PropertiesWithoutComments();
+        try {
+            FileInputStream in = new FileInputStream(path);
+            try {
+                p.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (FileNotFoundException ex) {
+            // Empty
+        }
+        return p;
+    }
+
+    /**
+     * Hash used to check whether cached translations are still for the same
+     * source text.
+     */
+    public static String hash(String content) {
+        try {
+            MessageDigest digest = java.security.MessageDigest
+                    .getInstance("MD5");
+            digest.update(content.getBytes("UTF-8"));
+            byte[] hash = digest.digest();
+            char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+                hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (Exception e) {
+            throw new IllegalStateException("");
+        }
+    }
+
+    /**
+     * Take a copy of a cache as loaded, to later pass to
+     * {@link #store(File, Map, PropertiesWithoutComments, String)}.
+     */
+    public static Map<Object, Object> snapshot(PropertiesWithoutComments properties) {
+        return new HashMap<Object, Object>(properties);
+    }
+
+    /**
+     * Apply the changes between <code>loaded</code> and <code>updated</code>
+     * to a cache file. Added and changed entries are written, entries removed
+     * from <code>updated</code> are removed, and anything else in the file
+     * (such as entries added by another build since it was loaded) is left
+     * alone. If nothing is left, the file is deleted.
+     *
+     * @param file     cache file
+     * @param loaded   snapshot of the cache as it was loaded, or an empty map
+     * @param updated  cache with this build's changes
+     * @param comments comment for the top of the file
+     */
+    public static void store(final File file, final Map<Object, Object> loaded,
+                             final PropertiesWithoutComments updated, final String comments) throws IOException {
+        locked(file, new Locked() {
+            public void run(File file) throws IOException {
+                PropertiesWithoutComments current = new PropertiesWithoutComments();
+                if (file.exists()) {
+                    FileInputStream in = new FileInputStream(file);
+                    try {
+                        current.load(in);
+                    } finally {
+                        in.close();
+                    }
+                }
+
+                for (Object key : loaded.keySet()) {
+                    if (!updated.containsKey(key)) {
+                        current.remove(key);
+                    }
+                }
+                for (Map.Entry<Object, Object> en : updated.entrySet()) {
+                    if (!en.getValue().equals(loaded.get(en.getKey()))) {
+                        current.put(en.getKey(), en.getValue());
+                    }
+                }
+
+                if (current.isEmpty()) {
+                    file.delete();
+                } else {
+                    write(file, current, comments);
+                }
+            }
+        });
+    }
+
+    /**
+     * Replace a cache file with another file, holding the same lock as
+     * {@link #store(File, Map, PropertiesWithoutComments, String)}, so a
+     * build storing its changes at the same time is not lost part way.
+     *
+     * @param file        cache file
+     * @param replacement file to move into its place, in the same folder
+     */
+    public static void replace(File file, final File replacement) throws IOException {
+        locked(file, new Locked() {
+            public void run(File file) throws IOException {
+                move(replacement, file);
+            }
+        });
+    }
+
+    private static void locked(File file, Locked action) throws IOException {
+        file = file.getAbsoluteFile();
+        file.getParentFile().mkdirs();
+
+        Object lock = getLock(file);
+        synchronized (lock) {
+            RandomAccessFile lockFile = new RandomAccessFile(new File(file.getParentFile(), "." + file.getName() + ".lock"), "rw");
+            try {
+                FileChannel channel = lockFile.getChannel();
+                FileLock fileLock = channel.lock();
+                try {
+                    action.run(file);
+                } finally {
+                    fileLock.release();
+                }
+            } finally {
+                lockFile.close();
+            }
+        }
+    }
+
+    private static void write(File file, PropertiesWithoutComments properties, String comments) throws IOException {
+        File tmp = File.createTempFile("." + file.getName(), ".tmp", file.getParentFile());
+        try {
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                properties.store(out, comments);
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            move(tmp, file);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Object getLock(File file) {
+        String path = file.getPath();
+        Object lock = LOCKS.get(path);
+        if (lock == null) {
+            Object newLock = new Object();
+            lock = LOCKS.putIfAbsent(path, newLock);
+            if (lock == null) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private interface Locked {
+        void run(File file) throws IOException;
+    }
+}
@@ -0,0 +1,214 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Seeds the translation cache from bundles that are already translated, for
+ * example hand made or legacy translations, or the output of an earlier build
+ * whose cache has been lost. Each translated text is paired with the current
+ * source text of the same key and stored as if it had come from the API, so
+ * the next build only translates what is missing.
+ * <p/>
+ * Texts whose untranslatable content doesn't match the source, and texts
+ * that are the same as the source, are left out and will be translated as
+ * usual. The untranslatable content must also be in the same order, as it is
+ * put back into the translation in the order it appears in the source.
+ * <p/>
+ * Translated bundles may be UTF-8, as written by the engine, or standard
+ * ISO-8859-1 with <code>&#92;uXXXX</code> escapes. Which is worked out for each
+ * text.
+ */
+public class CacheImporter {
+// ------------------------------ FIELDS ------------------------------
+
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final TranslateLog log;
+    private final PatternReplacer replacer;
+    private final List<File[]> bundles = new ArrayList<File[]>();
+    private boolean overwrite;
+
+    private final AtomicInteger imported = new AtomicInteger();
+    private final AtomicInteger kept = new AtomicInteger();
+    private final AtomicInteger mismatched = new AtomicInteger();
+    private final AtomicInteger untranslated = new AtomicInteger();
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public CacheImporter(TranslateLog log, PatternReplacer replacer) {
+        this.log = log;
+        this.replacer = replacer;
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    /**
+     * Replace cache entries that are already valid for the current source
+     * text, rather than keeping them.
+     */
+    public void setOverwrite(boolean overwrite) {
+        this.overwrite = overwrite;
+    }
+
+    public int getImported() {
+        return imported.get();
+    }
+
+    public int getKept() {
+        return kept.get();
+    }
+
+    public int getMismatched() {
+        return mismatched.get();
+    }
+
+    public int getUntranslated() {
+        return untranslated.get();
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Queue a translated bundle for import.
+     *
+     * @param sourceFile     source bundle
+     * @param translatedFile the same bundle translated to one language
+     * @param cacheFile      cache file for the bundle and language
+     */
+    public void add(File sourceFile, File translatedFile, File cacheFile) {
+        bundles.add(new File[]{sourceFile, translatedFile, cacheFile});
+    }
+
+    /**
+     * Import every queued bundle, several at once.
+     */
+    public void run(int threads) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (final File[] bundle : bundles) {
+                futures.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws IOException {
+                        importBundle(bundle[0], bundle[1], bundle[2]);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ee) {
+                    Throwable cause = ee.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IOException("Failed to import translations", cause);
+                } catch (InterruptedException ie) {
+                    throw new InterruptedIOException("Interrupted importing translations");
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            bundles.clear();
+        }
+    }
+
+    /**
+     * Import one translated bundle into its cache file.
+     *
+     * @return number of entries imported
+     */
+    public int importBundle(File sourceFile, File translatedFile, File cacheFile) throws IOException {
+        PropertiesWithoutComments source = CacheFiles.load(sourceFile);
+        PropertiesWithoutComments translations = CacheFiles.load(translatedFile);
+        PropertiesWithoutComments cached = CacheFiles.load(cacheFile);
+        Map<Object, Object> loaded = CacheFiles.snapshot(cached);
+
+        int count = 0;
+        for (String name : translations.stringPropertyNames()) {
+            if (!source.containsKey(name)) {
+                continue;
+            }
+            String original = decode(source.getProperty(name));
+            String translation = decodeTranslation(translations.getProperty(name));
+            String processed = replacer.preProcess(original);
+
+            if (translation.equals(original)) {
+                untranslated.incrementAndGet();
+                continue;
+            }
+            if (!overwrite && cached.containsKey(name)
+                    && TextNormalizer.fromCache(cached.getProperty(name), processed, true) != null) {
+                kept.incrementAndGet();
+                continue;
+            }
+
+            /*
+             * The cache holds translations with their untranslatable content
+             * replaced, just as the API returns them
+             */
+            String text = replacer.preProcess(translation);
+            if (PatternReplacer.countPlaceholders(text) != PatternReplacer.countPlaceholders(processed)
+                    || !replacer.findAll(translation).equals(replacer.findAll(original))) {
+                log.debug("Not importing " + name + " from " + translatedFile
+                        + " as its untranslatable content doesn't match the source");
+                mismatched.incrementAndGet();
+                continue;
+            }
+
+            cached.put(name, CacheFiles.hash(processed) + "|" + text);
+            count++;
+        }
+
+        if (count > 0) {
+            CacheFiles.store(cacheFile, loaded, cached,
+                    "Cache of auto generated google translations for Google Translate V2 API maven plugin");
+            log.debug("Imported " + count + " translations from " + translatedFile);
+        }
+        imported.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * Bundles are read as ISO-8859-1 but written as UTF-8, the same
+     * conversion as the engine makes for source and override files.
+     */
+    private String decode(String value) throws IOException {
+        return new String(value.getBytes("ISO-8859-1"), "UTF-8");
+    }
+
+    /**
+     * Translations are decoded as UTF-8 too, unless they hold characters
+     * that only a <code>&#92;uXXXX</code> escape could have given, or are not
+     * valid UTF-8, in which case the bundle is a standard ISO-8859-1 one and
+     * the text is already as it should be.
+     */
+    private String decodeTranslation(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                return value;
+            }
+        }
+        try {
+            return UTF_8.newDecoder().decode(ByteBuffer.wrap(value.getBytes("ISO-8859-1"))).toString();
+        } catch (CharacterCodingException cce) {
+            return value;
+        }
+    }
+}
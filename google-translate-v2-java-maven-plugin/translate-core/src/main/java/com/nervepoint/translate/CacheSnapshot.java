@@ -0,0 +1,266 @@
+package com.nervepoint.translate;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The whole cache tree (cache files and translation memories) packed into one
+ * compressed file, so CI builds can save and restore a single artifact
+ * rather than thousands of small files.
+ * <p/>
+ * The snapshot is a gzip stream holding a header, then the path (relative to
+ * the cache root, with <code>/</code> separators) and contents of each file,
+ * and finally a SHA-256 digest of everything before it. It is written and read
+ * sequentially. A snapshot can either be restored into a cache folder, or
+ * opened and used as a read-only cache tier beneath one, see
+ * {@link #load(File)}.
+ */
+public class CacheSnapshot {
+// ------------------------------ FIELDS ------------------------------
+
+    public final static int MAGIC = 0x54435331;
+    public final static int VERSION = 1;
+
+    private final static String DIGEST = "SHA-256";
+
+    private final Map<String, byte[]> files;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    private CacheSnapshot(Map<String, byte[]> files) {
+        this.files = files;
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Write every cache file under a folder to a snapshot.
+     *
+     * @return number of files written
+     */
+    public static int export(File cacheRoot, File snapshot) throws IOException {
+        List<String> paths = new ArrayList<String>();
+        list(cacheRoot, "", paths);
+        Collections.sort(paths);
+
+        File parent = snapshot.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+        File tmp = File.createTempFile("." + snapshot.getName(), ".tmp", parent);
+        try {
+            MessageDigest digest = newDigest();
+            FileOutputStream fout = new FileOutputStream(tmp);
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new GZIPOutputStream(fout, 65536), 65536));
+                DataOutputStream digested = new DataOutputStream(new DigestOutputStream(out, digest));
+                digested.writeInt(MAGIC);
+                digested.writeInt(VERSION);
+                for (String path : paths) {
+                    byte[] data = Files.readAllBytes(new File(cacheRoot, path).toPath());
+                    digested.writeBoolean(true);
+                    digested.writeUTF(path);
+                    digested.writeInt(data.length);
+                    digested.write(data);
+                }
+                digested.writeBoolean(false);
+                digested.flush();
+                out.write(digest.digest());
+                out.close();
+            } finally {
+                fout.close();
+            }
+            move(tmp, snapshot);
+        } finally {
+            tmp.delete();
+        }
+        return paths.size();
+    }
+
+    /**
+     * Restore a snapshot into a cache folder, replacing the files it
+     * contains and leaving any others alone. Files are written by several
+     * threads as the snapshot is read, to temporary names, and only moved
+     * into place once the whole snapshot has been checked, each while holding
+     * the same lock as a build storing to it.
+     *
+     * @return number of files restored
+     */
+    public static int restore(final File snapshot, final File cacheRoot, int threads) throws IOException {
+        final String rootPath = cacheRoot.getCanonicalPath() + File.separator;
+        final Map<File, File> written = Collections.synchronizedMap(new LinkedHashMap<File, File>());
+        final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+        final PipelineStage writers = new PipelineStage("restore", Math.max(1, threads), Math.max(1, threads) * 4);
+        boolean done = false;
+        try {
+            read(snapshot, new Visitor() {
+                public void file(String path, final byte[] data) throws IOException {
+                    final File file = new File(cacheRoot, path.replace('/', File.separatorChar)).getCanonicalFile();
+                    if (!file.getPath().startsWith(rootPath)) {
+                        throw new IOException(snapshot + " has a file outside the cache folder, " + path);
+                    }
+                    writers.submit(new Runnable() {
+                        public void run() {
+                            try {
+                                file.getParentFile().mkdirs();
+                                File tmp = File.createTempFile("." + file.getName(), ".tmp", file.getParentFile());
+                                written.put(file, tmp);
+                                FileOutputStream out = new FileOutputStream(tmp);
+                                try {
+                                    out.write(data);
+                                } finally {
+                                    out.close();
+                                }
+                            } catch (IOException ioe) {
+                                failure.compareAndSet(null, ioe);
+                            }
+                        }
+                    });
+                }
+            });
+            writers.drain();
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            for (Map.Entry<File, File> en : written.entrySet()) {
+                CacheFiles.replace(en.getKey(), en.getValue());
+            }
+            done = true;
+            return written.size();
+        } finally {
+            writers.abort();
+            if (!done) {
+                // Writers already running may still create files, so wait for them before cleaning up
+                writers.drain();
+                for (File tmp : written.values()) {
+                    tmp.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a snapshot into memory to use as a read-only cache tier.
+     */
+    public static CacheSnapshot load(File snapshot) throws IOException {
+        final Map<String, byte[]> files = new HashMap<String, byte[]>();
+        read(snapshot, new Visitor() {
+            public void file(String path, byte[] data) {
+                files.put(path, data);
+            }
+        });
+        return new CacheSnapshot(files);
+    }
+
+    private static void read(File snapshot, Visitor visitor) throws IOException {
+        MessageDigest digest = newDigest();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(snapshot), 65536), 65536));
+        try {
+            DataInputStream digested = new DataInputStream(new DigestInputStream(in, digest));
+            if (digested.readInt() != MAGIC) {
+                throw new IOException(snapshot + " is not a cache snapshot");
+            }
+            int version = digested.readInt();
+            if (version != VERSION) {
+                throw new IOException(snapshot + " is a version " + version + " cache snapshot, expected " + VERSION);
+            }
+            while (digested.readBoolean()) {
+                String path = digested.readUTF();
+                /*
+                 * Paths always use '/', so anything that another platform could
+                 * take as a separator or drive is refused along with '..'
+                 */
+                if (path.startsWith("/") || ("/" + path + "/").contains("/../")
+                        || path.indexOf('\\') != -1 || path.indexOf(':') != -1) {
+                    throw new IOException(snapshot + " has a file outside the cache folder, " + path);
+                }
+                byte[] data = new byte[digested.readInt()];
+                digested.readFully(data);
+                visitor.file(path, data);
+            }
+            byte[] expected = digest.digest();
+            byte[] actual = new byte[expected.length];
+            in.readFully(actual);
+            if (!MessageDigest.isEqual(expected, actual)) {
+                throw new IOException(snapshot + " is corrupt, its checksum does not match");
+            }
+        } catch (EOFException eofe) {
+            throw new IOException(snapshot + " is truncated");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void list(File dir, String path, List<String> paths) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            String rel = path.equals("") ? f.getName() : path + "/" + f.getName();
+            if (f.isDirectory()) {
+                list(f, rel, paths);
+            } else if (f.getName().endsWith(".properties")) {
+                paths.add(rel);
+            }
+        }
+    }
+
+    private static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(DIGEST + " is not available", nsae);
+        }
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Load a file from the snapshot.
+     *
+     * @param path path relative to the cache root, with <code>/</code> separators
+     * @return properties, empty if the snapshot doesn't have the file
+     */
+    public PropertiesWithoutComments load(String path) throws IOException {
+        PropertiesWithoutComments p = new PropertiesWithoutComments();
+        byte[] data = files.get(path);
+        if (data != null) {
+            p.load(new ByteArrayInputStream(data));
+        }
+        return p;
+    }
+
+    public boolean contains(String path) {
+        return files.containsKey(path);
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private interface Visitor {
+        void file(String path, byte[] data) throws IOException;
+    }
+}
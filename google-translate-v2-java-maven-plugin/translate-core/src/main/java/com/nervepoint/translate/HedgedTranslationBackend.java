@@ -0,0 +1,157 @@
+package com.nervepoint.translate;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Cuts the tail latency of another backend by hedging. If a request has not
+ * answered by a percentile of recent latencies, the same request is sent
+ * again, and whichever answers first is used. The other is cancelled, though
+ * a request already blocked on the network may still run to completion in
+ * the background, so it still counts against the API quota.
+ * <p>
+ * To keep that cost bounded, hedged requests are capped at a fraction of all
+ * requests, and nothing is hedged until enough latencies have been seen.
+ */
+public class HedgedTranslationBackend implements TranslationBackend {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * Latencies to see before hedging.
+     */
+    private final static int MIN_SAMPLES = 20;
+
+    private final static ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "translate-hedge");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final TranslateLog log;
+    private final TranslationBackend delegate;
+    private final double percentile;
+    private final double maxHedgeRate;
+    private final LatencyHistogram latencies = new LatencyHistogram(200);
+
+    private int requests;
+    private int hedges;
+    private int hedgeWins;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * @param log          log
+     * @param delegate     backend to hedge
+     * @param percentile   percentile (0 - 100) of recent latency after which to hedge
+     * @param maxHedgeRate most hedged requests as a fraction of all requests, e.g. 0.1
+     */
+    public HedgedTranslationBackend(TranslateLog log, TranslationBackend delegate, double percentile,
+                                    double maxHedgeRate) {
+        this.log = log;
+        this.delegate = delegate;
+        this.percentile = percentile;
+        this.maxHedgeRate = maxHedgeRate;
+    }
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface TranslationBackend ---------------------
+
+    public List<String> translate(final List<String> sources, final String sourceLang, final String targetLang)
+            throws IOException {
+        synchronized (this) {
+            requests++;
+        }
+        long delay = latencies.getCount() < MIN_SAMPLES ? -1 : latencies.getPercentile(percentile);
+
+        Callable<List<String>> request = new Callable<List<String>>() {
+            public List<String> call() throws Exception {
+                long started = System.currentTimeMillis();
+                List<String> result = delegate.translate(sources, sourceLang, targetLang);
+                latencies.record(System.currentTimeMillis() - started);
+                return result;
+            }
+        };
+
+        CompletionService<List<String>> completion = new ExecutorCompletionService<List<String>>(EXECUTOR);
+        Future<List<String>> primary = completion.submit(request);
+        Future<List<String>> hedge = null;
+        int outstanding = 1;
+        boolean waited = delay < 0;
+        try {
+            while (true) {
+                Future<List<String>> done;
+                if (!waited) {
+                    waited = true;
+                    done = completion.poll(delay, TimeUnit.MILLISECONDS);
+                    if (done == null) {
+                        if (tryHedge()) {
+                            log.debug("No answer after " + delay + "ms, sending a hedged request");
+                            hedge = completion.submit(request);
+                            outstanding++;
+                        }
+                        continue;
+                    }
+                } else {
+                    done = completion.take();
+                }
+                outstanding--;
+                try {
+                    List<String> result = done.get();
+                    if (done == hedge) {
+                        synchronized (this) {
+                            hedgeWins++;
+                        }
+                    }
+                    return result;
+                } catch (ExecutionException ee) {
+                    if (outstanding == 0) {
+                        Throwable cause = ee.getCause();
+                        if (cause instanceof IOException) {
+                            throw (IOException) cause;
+                        }
+                        if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        }
+                        throw new IOException(cause);
+                    }
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for translation");
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private synchronized boolean tryHedge() {
+        if (hedges + 1 > maxHedgeRate * requests) {
+            return false;
+        }
+        hedges++;
+        return true;
+    }
+
+    public synchronized int getRequests() {
+        return requests;
+    }
+
+    public synchronized int getHedges() {
+        return hedges;
+    }
+
+    public synchronized int getHedgeWins() {
+        return hedgeWins;
+    }
+}
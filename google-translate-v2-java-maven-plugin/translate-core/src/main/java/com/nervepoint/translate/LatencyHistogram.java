@@ -0,0 +1,55 @@
+package com.nervepoint.translate;
+
+import java.util.Arrays;
+
+/**
+ * Rolling record of the most recent request latencies, used to work out
+ * percentiles. Safe for use by many threads.
+ */
+public class LatencyHistogram {
+// ------------------------------ FIELDS ------------------------------
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * @param size number of recent samples to keep
+     */
+    public LatencyHistogram(int size) {
+        samples = new long[size];
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @param percentile percentile between 0 and 100
+     * @return latency in milliseconds, or -1 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count == 0) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100d * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
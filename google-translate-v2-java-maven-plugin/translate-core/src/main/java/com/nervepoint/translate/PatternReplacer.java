@@ -0,0 +1,164 @@
+package com.nervepoint.translate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Protects content that should not be translated. Once the patterns have been
+ * added, this keeps no state between calls, so may be shared between threads.
+ */
+public class PatternReplacer {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * A string that the translate API will not translate. This is the best I
+     * could find that works well enough for now. Anything we don't want
+     * translated (such a Wicket variables) gets turned into this before being
+     * sent to the translator. The result content is then processed again,
+     * putting the variable names back
+     */
+    private final static String UNTRANSLATABLE_STRING = "_999_";
+
+    private final List<String> patterns = new ArrayList<String>();
+    private volatile Pattern pattern;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public PatternReplacer() {
+    }
+
+// --------------------------- main() method ---------------------------
+
+    public static void main(String[] args) {
+        PatternReplacer pr = new PatternReplacer();
+        pr.addPattern("\\$\\{\\w*\\}");
+        pr.addPattern("\\%\\{\\w*\\}");
+        check(pr, "This text translates, ${thisDoesNot}, ${or1}, %{or2}, ${this1}, %{this2}, but this does");
+        check(pr, "And now with NOTHING to replace");
+        check(pr, "And now with another pattern {0}");
+    }
+
+    /**
+     * Count the placeholders in pre-processed content.
+     */
+    public static int countPlaceholders(String content) {
+        int count = 0;
+        for (int idx = content.indexOf(UNTRANSLATABLE_STRING); idx != -1;
+             idx = content.indexOf(UNTRANSLATABLE_STRING, idx + UNTRANSLATABLE_STRING.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Split pre-processed content at its placeholders, so the text between
+     * them can be translated on its own.
+     */
+    public static List<String> split(String content) {
+        List<String> fragments = new ArrayList<String>();
+        int from = 0;
+        for (int idx = content.indexOf(UNTRANSLATABLE_STRING); idx != -1;
+             idx = content.indexOf(UNTRANSLATABLE_STRING, from)) {
+            fragments.add(content.substring(from, idx));
+            from = idx + UNTRANSLATABLE_STRING.length();
+        }
+        fragments.add(content.substring(from));
+        return fragments;
+    }
+
+    /**
+     * Join fragments made by {@link #split(String)} back together, with
+     * placeholders between them.
+     */
+    public static String join(List<String> fragments) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < fragments.size(); i++) {
+            if (i > 0) {
+                b.append(UNTRANSLATABLE_STRING);
+            }
+            b.append(fragments.get(i));
+        }
+        return b.toString();
+    }
+
+    public synchronized void addPattern(String pattern) {
+        patterns.add(pattern);
+        StringBuilder b = new StringBuilder();
+        for (String p : patterns) {
+            if (b.length() > 0) {
+                b.append("|");
+            }
+            b.append(p);
+        }
+        this.pattern = Pattern.compile(b.toString());
+    }
+
+    private static void check(PatternReplacer pr, String original) {
+        System.out.println("Original:" + original);
+        String preProcessed = pr.preProcess(original);
+        System.out.println("Pre-processed:" + preProcessed);
+        String postProcessed = pr.postProcess(preProcessed, original);
+        System.out.println("Post-processed:" + postProcessed);
+        System.out.println(postProcessed);
+        if (postProcessed.equals(original)) {
+            System.out.println("Replaced as expected");
+        } else {
+            System.out.println("Failed!");
+        }
+    }
+
+    /**
+     * @return the untranslatable content in a text, in the order it appears
+     */
+    public List<String> findAll(String content) {
+        List<String> found = new ArrayList<String>();
+        Pattern p = pattern;
+        if (p != null) {
+            Matcher m = p.matcher(content);
+            while (m.find()) {
+                found.add(m.group());
+            }
+        }
+        return found;
+    }
+
+    public String preProcess(String content) {
+        Pattern p = pattern;
+        if (p != null) {
+            content = p.matcher(content).replaceAll(UNTRANSLATABLE_STRING);
+        }
+        return content;
+    }
+
+    /**
+     * Put the untranslatable content found in <code>original</code> back into
+     * <code>content</code>. The matches are found again in the original text
+     * rather than remembered from {@link #preProcess(String)}, so this can be
+     * used on texts that were pre-processed some time ago, e.g. in a batch.
+     */
+    public String postProcess(String content, String original) {
+        Pattern p = pattern;
+        if (p == null) {
+            return content;
+        }
+        String originalContent = content;
+        Matcher m = p.matcher(original);
+        int idx;
+        int found = 0;
+        int from = 0;
+        StringBuilder b = new StringBuilder();
+        while (m.find()) {
+            idx = content.indexOf(UNTRANSLATABLE_STRING, from);
+            if (idx == -1) {
+                throw new RuntimeException("Expected to find an untranslateable string, but there was not one. The string we were given was '" + originalContent + "'. The original text '" + original + "' contains more variables than the " + found + " that were found.");
+            }
+            b.append(content, from, idx).append(m.group());
+            from = idx + UNTRANSLATABLE_STRING.length();
+            found++;
+        }
+        b.append(content, from, content.length());
+        return b.toString();
+    }
+}
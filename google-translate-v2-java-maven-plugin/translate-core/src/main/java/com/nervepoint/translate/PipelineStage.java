@@ -0,0 +1,128 @@
+package com.nervepoint.translate;
+
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One stage of the translation pipeline: a fixed number of threads taking
+ * work from a bounded queue. Submitting work when the queue is full blocks
+ * until there is room, so a slow stage holds back the stages feeding it
+ * rather than letting work pile up in memory.
+ * <p/>
+ * On Java 21 and later a stage can instead run each piece of work on its own
+ * virtual thread, see {@link #virtual(String, int)}.
+ */
+public class PipelineStage {
+// ------------------------------ FIELDS ------------------------------
+
+    private final ExecutorService executor;
+    private final Semaphore slots;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public PipelineStage(final String name, int threads, int queueSize) {
+        if (threads < 1 || queueSize < 1) {
+            throw new IllegalArgumentException("Pipeline stage " + name + " needs at least one thread and queue slot");
+        }
+        /*
+         * The semaphore is what bounds the stage. The executor's own queue
+         * has room for every permit, as a thread may still be busy for a
+         * moment after giving its permit back.
+         */
+        slots = new Semaphore(threads + queueSize);
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threads + queueSize), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "translate-" + name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private PipelineStage(ExecutorService executor, int maxRunning) {
+        this.executor = executor;
+        this.slots = new Semaphore(maxRunning);
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Create a stage that starts a virtual thread for each piece of work, with
+     * at most <code>maxRunning</code> running at once. The plugin is built for
+     * Java 1.7, so the executor is looked up reflectively.
+     *
+     * @return stage, or <code>null</code> if this JVM doesn't have virtual threads
+     */
+    public static PipelineStage virtual(String name, int maxRunning) {
+        if (maxRunning < 1) {
+            throw new IllegalArgumentException("Pipeline stage " + name + " needs to run at least one task");
+        }
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new PipelineStage(executor, maxRunning);
+        } catch (NoSuchMethodException nsme) {
+            return null;
+        } catch (IllegalAccessException iae) {
+            return null;
+        } catch (InvocationTargetException ite) {
+            // Java 19 and 20 have them only as a preview feature
+            return null;
+        }
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Queue some work, waiting for room if the stage is busy.
+     */
+    public void submit(final Runnable task) throws InterruptedIOException {
+        try {
+            slots.acquire();
+        } catch (InterruptedException ie) {
+            throw new InterruptedIOException("Interrupted waiting for pipeline");
+        }
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    slots.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Stop taking work and wait for everything queued to be done.
+     */
+    public void drain() throws InterruptedIOException {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // keep waiting, a stage may legitimately be busy for a long time
+            }
+        } catch (InterruptedException ie) {
+            executor.shutdownNow();
+            throw new InterruptedIOException("Interrupted waiting for pipeline");
+        }
+    }
+
+    /**
+     * Stop straight away, dropping any queued work.
+     */
+    public void abort() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,122 @@
+package com.nervepoint.translate;
+
+/**
+ * Reports how a run is getting on as a summary line every so often, rather
+ * than a line for every file and text, so the amount logged doesn't grow with
+ * the number of bundles. A unit is one bundle translated to one language.
+ * Safe to use from several threads.
+ */
+public class ProgressReporter {
+// ------------------------------ FIELDS ------------------------------
+
+    private final TranslateLog log;
+    private final long interval;
+    private long started;
+    private long lastReport;
+    private int expected;
+    private int done;
+    private long texts;
+    private long cachedTexts;
+    private long characters;
+    private int requests;
+    private int uncached;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * @param interval least time between reports, in milliseconds
+     */
+    public ProgressReporter(TranslateLog log, long interval) {
+        this.log = log;
+        this.interval = interval;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    public synchronized void start() {
+        started = lastReport = System.currentTimeMillis();
+        expected = done = requests = uncached = 0;
+        texts = cachedTexts = characters = 0;
+    }
+
+    /**
+     * Some more units are going to be worked on.
+     */
+    public synchronized void expect(int units) {
+        expected += units;
+    }
+
+    /**
+     * A unit that was expected turned out to have nothing to do.
+     */
+    public synchronized void skip() {
+        expected--;
+    }
+
+    /**
+     * A bundle had no cache file.
+     */
+    public synchronized void uncached() {
+        uncached++;
+    }
+
+    /**
+     * A request was sent to the backend.
+     */
+    public synchronized void translated(int characters) {
+        this.characters += characters;
+        requests++;
+        maybeReport();
+    }
+
+    /**
+     * A unit is finished.
+     *
+     * @param texts       texts in the bundle
+     * @param cachedTexts how many of them needed no translating
+     */
+    public synchronized void done(int texts, int cachedTexts) {
+        this.texts += texts;
+        this.cachedTexts += cachedTexts;
+        done++;
+        maybeReport();
+    }
+
+    /**
+     * Log the final summary.
+     */
+    public synchronized void finish() {
+        log.info("Translated " + done + " bundles in " + format(System.currentTimeMillis() - started) + ", "
+                + describe());
+        if (uncached > 0) {
+            log.info(uncached + " bundles had no cache file, so were translated in full");
+        }
+    }
+
+    private void maybeReport() {
+        long now = System.currentTimeMillis();
+        if (now - lastReport < interval) {
+            return;
+        }
+        lastReport = now;
+        StringBuilder b = new StringBuilder("Progress: ").append(done);
+        if (expected > done) {
+            b.append('/').append(expected);
+        }
+        b.append(" bundles, ").append(describe());
+        if (done > 0 && expected > done) {
+            b.append(", about ").append(format((now - started) * (expected - done) / done)).append(" left");
+        }
+        log.info(b.toString());
+    }
+
+    private String describe() {
+        return texts + " texts (" + (texts == 0 ? 100 : cachedTexts * 100 / texts) + "% from cache), "
+                + characters + " characters translated in " + requests + " requests";
+    }
+
+    private static String format(long millis) {
+        long seconds = millis / 1000;
+        return seconds < 60 ? seconds + "s" : (seconds / 60) + "m" + (seconds % 60) + "s";
+    }
+}
@@ -23,7 +23,7 @@
  *
  */
 
-package com.nervepoint.maven.plugins;
+package com.nervepoint.translate;
 
 import java.io.IOException;
 import java.io.PrintStream;
@@ -109,8 +109,7 @@ import java.util.*;
  * @author  Xueming Shen
  * @since   JDK1.0
  */
-public
-class PropertiesWithoutComments extends Hashtable<Object,Object> {
+public class PropertiesWithoutComments extends Hashtable<Object,Object> {
     /**
      * use serialVersionUID from JDK 1.1.X for interoperability
      */
@@ -0,0 +1,273 @@
+package com.nervepoint.translate;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client for a shared, content addressed translation cache served over HTTP.
+ * Translations are fetched with <code>GET &lt;url&gt;/&lt;key&gt;</code> and
+ * stored with <code>PUT &lt;url&gt;/&lt;key&gt;</code>, where the key is a
+ * hash of the languages and source text. Any server that can do this will
+ * work, e.g. {@link RemoteCacheServer} or a generic build cache. Stores send
+ * a token, if one is given, as <code>Authorization: Bearer &lt;token&gt;</code>.
+ * <p>
+ * The texts of a batch are fetched and stored several at a time, so an agent
+ * with a cold cache doesn't wait for a round trip per text in turn. If the
+ * server cannot be reached the cache is disabled for the rest of the build,
+ * and translation carries on without it.
+ */
+public class RemoteCache {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * Most requests made at once for a batch. HttpURLConnection keeps up to
+     * 5 idle connections to a server by default.
+     */
+    private final static int CONNECTIONS = 5;
+
+    private final TranslateLog log;
+    private final String url;
+    private final boolean write;
+    private final int timeout;
+    private final ThreadPoolExecutor executor;
+    private volatile boolean failed;
+    private volatile boolean refused;
+    private String token;
+    private int hits;
+    private int misses;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * @param log     log
+     * @param url     base URL of the cache
+     * @param write   whether new translations should be stored in the cache
+     * @param timeout connect and read timeout in milliseconds
+     */
+    public RemoteCache(TranslateLog log, String url, boolean write, int timeout) {
+        this.log = log;
+        this.url = url.endsWith("/") ? url : url + "/";
+        this.write = write;
+        this.timeout = timeout;
+        /* Idle threads go away, so nothing needs closing when a build is done with the cache */
+        executor = new ThreadPoolExecutor(CONNECTIONS, CONNECTIONS, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "translate-remote-cache-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    /**
+     * @param token token the server needs before it will store translations
+     */
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Get a translation.
+     *
+     * @param key content key
+     * @return translated text, or null if it's not in the cache
+     */
+    public String get(String key) {
+        if (failed) {
+            return null;
+        }
+        try {
+            HttpURLConnection conn = open(key);
+            int code = conn.getResponseCode();
+            if (code == HttpURLConnection.HTTP_OK) {
+                count(true);
+                return read(conn.getInputStream());
+            }
+            drain(conn.getErrorStream());
+            if (code != HttpURLConnection.HTTP_NOT_FOUND) {
+                log.warn("Unexpected response " + code + " getting " + key + " from remote cache");
+            }
+        } catch (IOException ioe) {
+            fail(ioe);
+        }
+        count(false);
+        return null;
+    }
+
+    /**
+     * Get several translations, a few requests at a time.
+     *
+     * @param keys content keys
+     * @return translated texts in the same order as the keys, null for those
+     *         not in the cache
+     */
+    public String[] get(List<String> keys) {
+        String[] results = new String[keys.size()];
+        if (keys.size() < 2) {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = get(keys.get(i));
+            }
+            return results;
+        }
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+        for (final String key : keys) {
+            futures.add(executor.submit(new Callable<String>() {
+                public String call() {
+                    return get(key);
+                }
+            }));
+        }
+        for (int i = 0; i < results.length; i++) {
+            results[i] = await(futures.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * Store several translations, a few requests at a time.
+     *
+     * @param keys  content keys
+     * @param texts translated texts, in the same order as the keys
+     */
+    public void put(List<String> keys, List<String> texts) {
+        if (failed || refused || !write) {
+            return;
+        }
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+        for (int i = 0; i < keys.size(); i++) {
+            final String key = keys.get(i);
+            final String text = texts.get(i);
+            futures.add(executor.submit(new Callable<String>() {
+                public String call() {
+                    put(key, text);
+                    return null;
+                }
+            }));
+        }
+        for (Future<String> future : futures) {
+            await(future);
+        }
+    }
+
+    private static String await(Future<String> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+        } catch (ExecutionException ee) {
+            // get and put handle their own failures, so this can't happen
+        }
+        return null;
+    }
+
+    private synchronized void count(boolean hit) {
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+        }
+    }
+
+    /**
+     * Store a translation.
+     *
+     * @param key  content key
+     * @param text translated text
+     */
+    public void put(String key, String text) {
+        if (failed || refused || !write) {
+            return;
+        }
+        try {
+            HttpURLConnection conn = open(key);
+            conn.setRequestMethod("PUT");
+            conn.setDoOutput(true);
+            if (token != null && token.length() > 0) {
+                conn.setRequestProperty("Authorization", "Bearer " + token);
+            }
+            byte[] data = text.getBytes("UTF-8");
+            conn.setFixedLengthStreamingMode(data.length);
+            conn.setRequestProperty("Content-Type", "text/plain; charset=UTF-8");
+            OutputStream out = conn.getOutputStream();
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            int code = conn.getResponseCode();
+            if (code / 100 == 2) {
+                drain(conn.getInputStream());
+            } else if (code == HttpURLConnection.HTTP_UNAUTHORIZED || code == HttpURLConnection.HTTP_FORBIDDEN) {
+                drain(conn.getErrorStream());
+                if (!refused) {
+                    refused = true;
+                    log.warn("Remote cache " + url + " refused to store translations, check the remote cache token."
+                            + " Nothing more will be stored there by this build.");
+                }
+            } else {
+                drain(conn.getErrorStream());
+                log.warn("Unexpected response " + code + " storing " + key + " in remote cache");
+            }
+        } catch (IOException ioe) {
+            fail(ioe);
+        }
+    }
+
+    private HttpURLConnection open(String key) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url + key).openConnection();
+        conn.setConnectTimeout(timeout);
+        conn.setReadTimeout(timeout);
+        conn.setUseCaches(false);
+        return conn;
+    }
+
+    private void fail(IOException ioe) {
+        log.warn("Remote cache " + url + " failed, it will not be used for the rest of this build. " + ioe.getMessage());
+        failed = true;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int r;
+            while ((r = in.read(buf)) != -1) {
+                out.write(buf, 0, r);
+            }
+            return new String(out.toByteArray(), "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read and close a response stream so the connection can be re-used.
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in != null) {
+            read(in);
+        }
+    }
+}
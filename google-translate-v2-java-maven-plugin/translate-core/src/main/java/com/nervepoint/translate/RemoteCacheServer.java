@@ -0,0 +1,199 @@
+package com.nervepoint.translate;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * A minimal server for {@link RemoteCache}, storing each translation as a
+ * file. Good enough for a team or CI cache, and for testing. Can be run with
+ * the cache-server goal, or directly with
+ * <code>java com.nervepoint.translate.RemoteCacheServer &lt;port&gt; &lt;directory&gt; [&lt;host&gt;]</code>,
+ * taking the token from the <code>TRANSLATE_CACHE_TOKEN</code> environment
+ * variable.
+ * <p>
+ * Every build using the cache ships what it serves, so it only listens on the
+ * loopback interface unless given another host, and only stores translations
+ * from clients sending its token as <code>Authorization: Bearer &lt;token&gt;</code>.
+ * Without a token it is read only.
+ */
+public class RemoteCacheServer implements HttpHandler {
+// ------------------------------ FIELDS ------------------------------
+
+    private final static Pattern KEY = Pattern.compile("[0-9a-fA-F]{8,128}");
+
+    private final File directory;
+    private byte[] token;
+    private HttpServer server;
+    private ExecutorService executor;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public RemoteCacheServer(File directory) {
+        this.directory = directory;
+    }
+
+// --------------------------- main() method ---------------------------
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: RemoteCacheServer <port> <directory> [<host>]");
+            System.exit(1);
+        }
+        RemoteCacheServer server = new RemoteCacheServer(new File(args[1]));
+        server.setToken(System.getenv("TRANSLATE_CACHE_TOKEN"));
+        server.start(args.length > 2 ? args[2] : null, Integer.parseInt(args[0]));
+        System.out.println("Serving translation cache in " + args[1] + " on " + server.getAddress()
+                + (server.isReadOnly() ? ", read only as TRANSLATE_CACHE_TOKEN is not set" : ""));
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean isReadOnly() {
+        return token == null;
+    }
+
+    /**
+     * @param token token clients must send to store translations, or
+     *              <code>null</code> to refuse them all
+     */
+    public void setToken(String token) {
+        try {
+            this.token = token == null || token.length() == 0 ? null : token.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException uee) {
+            throw new IllegalStateException(uee);
+        }
+    }
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface HttpHandler ---------------------
+
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            String key = exchange.getRequestURI().getPath().substring(exchange.getHttpContext().getPath().length());
+            if (key.startsWith("/")) {
+                key = key.substring(1);
+            }
+            if (!KEY.matcher(key).matches()) {
+                respond(exchange, 400, "Bad key");
+                return;
+            }
+            File file = new File(new File(directory, key.substring(0, 2)), key);
+
+            if ("GET".equals(exchange.getRequestMethod())) {
+                if (!file.exists()) {
+                    respond(exchange, 404, "Not found");
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+                exchange.sendResponseHeaders(200, file.length());
+                copy(new FileInputStream(file), exchange.getResponseBody());
+            } else if ("PUT".equals(exchange.getRequestMethod())) {
+                if (!isAuthorized(exchange)) {
+                    respond(exchange, 401, "A valid token is needed to store translations");
+                    return;
+                }
+                file.getParentFile().mkdirs();
+                File tmp = File.createTempFile(key, ".tmp", file.getParentFile());
+                copy(exchange.getRequestBody(), new FileOutputStream(tmp));
+                if (!tmp.renameTo(file)) {
+                    file.delete();
+                    if (!tmp.renameTo(file)) {
+                        tmp.delete();
+                        throw new IOException("Could not store " + file);
+                    }
+                }
+                exchange.sendResponseHeaders(201, -1);
+            } else {
+                respond(exchange, 405, "Method not allowed");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Start the server on the loopback interface.
+     */
+    public void start(int port) throws IOException {
+        start(null, port);
+    }
+
+    /**
+     * @param host address to listen on, or <code>null</code> for the loopback interface
+     * @param port port to listen on, or zero for any free port
+     */
+    public void start(String host, int port) throws IOException {
+        directory.mkdirs();
+        server = HttpServer.create(host == null || host.length() == 0
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+                : new InetSocketAddress(host, port), 0);
+        server.createContext("/", this);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private boolean isAuthorized(HttpExchange exchange) throws IOException {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        return token != null && authorization != null && authorization.startsWith("Bearer ")
+                && MessageDigest.isEqual(token, authorization.substring("Bearer ".length()).getBytes("UTF-8"));
+    }
+
+    /**
+     * Send a response with a short message. Always sending a body keeps the
+     * connection usable for the next request, which is not the case for some
+     * JDK versions when a client error is sent with no body.
+     */
+    private static void respond(HttpExchange exchange, int code, String message) throws IOException {
+        byte[] data = message.getBytes("UTF-8");
+        exchange.sendResponseHeaders(code, data.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        try {
+            try {
+                byte[] buf = new byte[4096];
+                int r;
+                while ((r = in.read(buf)) != -1) {
+                    out.write(buf, 0, r);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.nervepoint.translate;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits long texts into sentences so they can be translated and cached one
+ * sentence at a time. This should be given text that has already been through
+ * {@link PatternReplacer#preProcess(String)}, so any untranslatable content
+ * (which may well contain full stops) has been replaced by a placeholder.
+ */
+public class Segmenter {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * Separates the property name from the hash of the sentence in the keys
+     * used to cache individual sentences.
+     */
+    public final static String SEGMENT_KEY_SEPARATOR = "@@";
+
+    private final Locale locale;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public Segmenter(String language) {
+        String[] parts = language.split("_");
+        this.locale = parts.length > 1 ? new Locale(parts[0], parts[1]) : new Locale(parts[0]);
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    public static String segmentKey(String name, String hash) {
+        return name + SEGMENT_KEY_SEPARATOR + hash;
+    }
+
+    public static boolean isSegmentKey(String key) {
+        return key.contains(SEGMENT_KEY_SEPARATOR);
+    }
+
+    public static String baseKey(String segmentKey) {
+        int idx = segmentKey.indexOf(SEGMENT_KEY_SEPARATOR);
+        return idx == -1 ? segmentKey : segmentKey.substring(0, idx);
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Split text into sentences. Joining the returned segments back together
+     * gives the original text.
+     */
+    public List<Segment> split(String content) {
+        List<Segment> segments = new ArrayList<Segment>();
+        BreakIterator it = BreakIterator.getSentenceInstance(locale);
+        it.setText(content);
+        int start = it.first();
+        for (int end = it.next(); end != BreakIterator.DONE; start = end, end = it.next()) {
+            segments.add(new Segment(content.substring(start, end)));
+        }
+        return segments;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * A single sentence. Surrounding whitespace is kept apart from the text
+     * itself, as translation does not preserve it.
+     */
+    public static class Segment {
+        private final String leading;
+        private final String text;
+        private final String trailing;
+
+        Segment(String content) {
+            int start = 0;
+            int end = content.length();
+            while (start < end && Character.isWhitespace(content.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(content.charAt(end - 1))) {
+                end--;
+            }
+            leading = content.substring(0, start);
+            text = content.substring(start, end);
+            trailing = content.substring(end);
+        }
+
+        public String getLeading() {
+            return leading;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getTrailing() {
+            return trailing;
+        }
+    }
+}
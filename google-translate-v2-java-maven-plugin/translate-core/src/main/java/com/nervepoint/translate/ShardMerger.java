@@ -0,0 +1,96 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the cache files written by the shards of a sharded translate run
+ * back into a cache file. When two shards, or a shard and the existing cache,
+ * disagree about a key, the entry whose hash matches the current source text
+ * wins.
+ */
+public class ShardMerger {
+// ------------------------------ FIELDS ------------------------------
+
+    private final TranslateLog log;
+    private final PatternReplacer replacer;
+    private int conflicts;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public ShardMerger(TranslateLog log, PatternReplacer replacer) {
+        this.log = log;
+        this.replacer = replacer;
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    /**
+     * @return number of keys the shards and cache disagreed about so far
+     */
+    public int getConflicts() {
+        return conflicts;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Merge shard cache files into a cache file.
+     *
+     * @param cacheFile  cache file to merge into
+     * @param deltaFiles the same cache file as written by each shard, in shard order
+     * @param sourceFile source bundle the cache belongs to, only read if there are conflicts
+     * @return number of entries merged
+     */
+    public int merge(File cacheFile, List<File> deltaFiles, File sourceFile) throws IOException {
+        PropertiesWithoutComments merged = CacheFiles.load(cacheFile);
+        Map<Object, Object> loaded = CacheFiles.snapshot(merged);
+        PropertiesWithoutComments source = null;
+        int entries = 0;
+
+        for (File deltaFile : deltaFiles) {
+            log.debug("Merging " + deltaFile.getAbsolutePath());
+            PropertiesWithoutComments delta = CacheFiles.load(deltaFile);
+            for (String name : delta.stringPropertyNames()) {
+                String value = delta.getProperty(name);
+                String existing = merged.getProperty(name);
+                if (existing != null && !existing.equals(value)) {
+                    if (source == null) {
+                        source = CacheFiles.load(sourceFile);
+                    }
+                    conflicts++;
+                    if (!chooseDelta(source, name, existing, value)) {
+                        continue;
+                    }
+                }
+                merged.put(name, value);
+                entries++;
+            }
+        }
+
+        CacheFiles.store(cacheFile, loaded, merged,
+                "Cache of auto generated google translations for Google Translate V2 API maven plugin");
+        return entries;
+    }
+
+    /**
+     * Decide between two cached translations of the same key. The one whose
+     * hash matches the current source text is kept. If that can't be decided,
+     * the shard's entry wins as it is the newer one.
+     */
+    private boolean chooseDelta(PropertiesWithoutComments source, String name, String existing, String delta)
+            throws UnsupportedEncodingException {
+        String sourceValue = source.getProperty(name);
+        if (sourceValue == null) {
+            return true;
+        }
+        String processed = replacer.preProcess(new String(sourceValue.getBytes("ISO-8859-1"), "UTF-8"));
+        if (TextNormalizer.fromCache(delta, processed, false) != null) {
+            return true;
+        }
+        return TextNormalizer.fromCache(existing, processed, false) == null;
+    }
+}
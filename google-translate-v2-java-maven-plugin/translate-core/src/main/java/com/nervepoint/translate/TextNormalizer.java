@@ -0,0 +1,121 @@
+package com.nervepoint.translate;
+
+import java.text.Normalizer;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes text before it is hashed for the cache or sent for translation,
+ * so texts that differ only trivially share a translation. Version 1 of the
+ * rules, in order:
+ * <ul>
+ * <li>Unicode NFC</li>
+ * <li>CRLF and CR line endings become LF</li>
+ * <li>Runs of spaces and tabs become a single space</li>
+ * <li>Leading and trailing white space is removed, and put back around the translation</li>
+ * </ul>
+ * Cache entries made from normalized text have their hash prefixed with the
+ * rules version (<code>n1:</code>), so they are always checked with the rules
+ * that made them, and entries made without normalization stay valid whether
+ * or not it is turned on.
+ */
+public class TextNormalizer {
+// ------------------------------ FIELDS ------------------------------
+
+    public final static String PREFIX = "n1:";
+
+    private final static Pattern LINE_ENDINGS = Pattern.compile("\r\n?");
+    private final static Pattern SPACES = Pattern.compile("[ \t]+");
+
+    private final String leading;
+    private final String core;
+    private final String trailing;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    private TextNormalizer(String leading, String core, String trailing) {
+        this.leading = leading;
+        this.core = core;
+        this.trailing = trailing;
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    public static TextNormalizer normalize(String text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        String core = Normalizer.normalize(text.substring(start, end), Normalizer.Form.NFC);
+        core = LINE_ENDINGS.matcher(core).replaceAll("\n");
+        core = SPACES.matcher(core).replaceAll(" ");
+        return new TextNormalizer(text.substring(0, start), core, text.substring(end));
+    }
+
+    /**
+     * Get the translation of a text from a cache entry
+     * (<code>hash|translation</code>), if the entry is for that text.
+     *
+     * @param entry     cache entry
+     * @param processed text, after the no translate patterns have been replaced
+     * @param normalize whether normalization is on, in which case a plain
+     *                  entry for the normalized text is also a match
+     * @return translation, or <code>null</code> if the entry is for some other text
+     */
+    public static String fromCache(String entry, String processed, boolean normalize) {
+        int idx = entry.indexOf('|');
+        if (idx == -1) {
+            return null;
+        }
+        String h = entry.substring(0, idx);
+        String text = entry.substring(idx + 1);
+        if (h.startsWith(PREFIX)) {
+            TextNormalizer normalized = normalize(processed);
+            return h.substring(PREFIX.length()).equals(CacheFiles.hash(normalized.getCore()))
+                    ? normalized.restore(text) : null;
+        }
+        if (h.equals(CacheFiles.hash(processed))) {
+            return text;
+        }
+        if (normalize) {
+            TextNormalizer normalized = normalize(processed);
+            if (normalized.isChanged(processed) && h.equals(CacheFiles.hash(normalized.getCore()))) {
+                return normalized.restore(text);
+            }
+        }
+        return null;
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    public String getCore() {
+        return core;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * @return whether normalizing changed the text
+     */
+    public boolean isChanged(String text) {
+        return leading.length() > 0 || trailing.length() > 0 || !core.equals(text);
+    }
+
+    /**
+     * Put the original leading and trailing white space around a translation
+     * of the core text.
+     */
+    public String restore(String translatedCore) {
+        return leading + translatedCore + trailing;
+    }
+
+    /**
+     * @return the cache entry for a translation of the core text
+     */
+    public String toCache(String translatedCore) {
+        return PREFIX + CacheFiles.hash(core) + "|" + translatedCore;
+    }
+}
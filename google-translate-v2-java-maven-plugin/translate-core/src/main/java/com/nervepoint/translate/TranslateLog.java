@@ -0,0 +1,20 @@
+package com.nervepoint.translate;
+
+/**
+ * Logging used by the translation engine, so it can report through whatever
+ * is running it (a Maven build, the command line etc).
+ */
+public interface TranslateLog {
+
+    boolean isDebugEnabled();
+
+    void debug(String message);
+
+    void info(String message);
+
+    void warn(String message);
+
+    void error(String message);
+
+    void error(Throwable error);
+}
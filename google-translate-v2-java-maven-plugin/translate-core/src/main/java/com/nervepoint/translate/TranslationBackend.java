@@ -0,0 +1,20 @@
+package com.nervepoint.translate;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Something that can translate texts.
+ */
+public interface TranslationBackend {
+
+    /**
+     * Translate a batch of texts.
+     *
+     * @param sources    texts to translate
+     * @param sourceLang language of the texts
+     * @param targetLang language to translate to
+     * @return translated texts, in the same order as the sources
+     */
+    List<String> translate(List<String> sources, String sourceLang, String targetLang) throws IOException;
+}
@@ -0,0 +1,28 @@
+package com.nervepoint.translate;
+
+/**
+ * Creates a {@link TranslationBackend}. Implementations are found with
+ * {@link java.util.ServiceLoader}, so a backend is made available by putting
+ * its module on the classpath. Factories should not load the backend's own
+ * dependencies until {@link #create(TranslateLog, String)} is called.
+ */
+public interface TranslationBackendFactory {
+
+    /**
+     * Name used to select this backend, e.g. <code>google-v2</code>.
+     */
+    String getName();
+
+    /**
+     * Whether the translations are real, and so worth caching.
+     */
+    boolean isPersistent();
+
+    /**
+     * Create the backend.
+     *
+     * @param log    log
+     * @param apikey API key, if the backend needs one
+     */
+    TranslationBackend create(TranslateLog log, String apikey);
+}
@@ -0,0 +1,32 @@
+package com.nervepoint.translate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Looks up {@link TranslationBackendFactory} implementations.
+ */
+public class TranslationBackends {
+
+    private TranslationBackends() {
+    }
+
+    /**
+     * Find a backend factory by name.
+     *
+     * @param name   backend name
+     * @param loader class loader to search
+     * @throws IllegalArgumentException if there is no backend with that name
+     */
+    public static TranslationBackendFactory getFactory(String name, ClassLoader loader) {
+        List<String> names = new ArrayList<String>();
+        for (TranslationBackendFactory factory : ServiceLoader.load(TranslationBackendFactory.class, loader)) {
+            if (factory.getName().equals(name)) {
+                return factory;
+            }
+            names.add(factory.getName());
+        }
+        throw new IllegalArgumentException("No translation backend named " + name + ", available backends are " + names);
+    }
+}
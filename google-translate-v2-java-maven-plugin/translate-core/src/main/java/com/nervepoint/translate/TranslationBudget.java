@@ -0,0 +1,69 @@
+package com.nervepoint.translate;
+
+/**
+ * Limits how much translation work a single build may do, either by elapsed
+ * time or by the number of characters sent to the translation API. Once the
+ * budget is used up it stays used up, so the remaining texts for the build
+ * are all deferred to the next one.
+ */
+public class TranslationBudget {
+// ------------------------------ FIELDS ------------------------------
+
+    private final long deadline;
+    private final long maxCharacters;
+    private long characters;
+    private boolean exhausted;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * @param maxTime       maximum time in milliseconds, or zero for no limit
+     * @param maxCharacters maximum number of characters, or zero for no limit
+     */
+    public TranslationBudget(long maxTime, long maxCharacters) {
+        this.deadline = maxTime > 0 ? System.currentTimeMillis() + maxTime : 0;
+        this.maxCharacters = maxCharacters;
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    public synchronized long getCharacters() {
+        return characters;
+    }
+
+    public synchronized boolean isExhausted() {
+        if (!exhausted && isOutOfTime()) {
+            exhausted = true;
+        }
+        return exhausted;
+    }
+
+    /**
+     * Whether the time allowed has passed. Text already reserved against
+     * the character limit may still be sent, but nothing may be sent once the
+     * time is up.
+     */
+    public synchronized boolean isOutOfTime() {
+        return deadline > 0 && System.currentTimeMillis() >= deadline;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Reserve budget for translating some text.
+     *
+     * @param length number of characters to be translated
+     * @return true if the text may be translated, false if it should be deferred
+     */
+    public synchronized boolean tryAcquire(int length) {
+        if (isExhausted()) {
+            return false;
+        }
+        if (maxCharacters > 0 && characters + length > maxCharacters) {
+            exhausted = true;
+            return false;
+        }
+        characters += length;
+        return true;
+    }
+}
@@ -0,0 +1,125 @@
+package com.nervepoint.translate;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Translations kept in memory for the life of the JVM, shared by every run
+ * in it. Modules of a reactor build, and runs in a Maven daemon or the
+ * command line daemon, often share texts, so a text translated (or read
+ * from a cache file) by one of them is found here by the next without
+ * another request.
+ * <p/>
+ * Keys identify the source text and both languages, values are the
+ * translated text. The cache is bounded by an estimate of the memory its
+ * entries take, and drops the least recently used entries first.
+ */
+public class TranslationCache {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * Rough cost of a map entry and two strings, on top of their characters.
+     */
+    private final static int ENTRY_OVERHEAD = 96;
+
+    private static TranslationCache shared;
+
+    private final LinkedHashMap<String, String> entries = new LinkedHashMap<String, String>(256, 0.75f, true);
+    private long maxWeight;
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public TranslationCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * Get the cache shared by everything in this JVM, creating it the first
+     * time. A different size given later resizes it.
+     *
+     * @param maxWeight most memory, in bytes, for the entries
+     */
+    public static synchronized TranslationCache getShared(long maxWeight) {
+        if (shared == null) {
+            shared = new TranslationCache(maxWeight);
+        } else {
+            shared.setMaxWeight(maxWeight);
+        }
+        return shared;
+    }
+
+    static int weigh(String key, String text) {
+        return ENTRY_OVERHEAD + 2 * (key.length() + text.length());
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * @return translated text, or <code>null</code> if it isn't cached
+     */
+    public synchronized String get(String key) {
+        String text = entries.get(key);
+        if (text == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return text;
+    }
+
+    public synchronized void put(String key, String text) {
+        String previous = entries.put(key, text);
+        if (previous != null) {
+            weight -= weigh(key, previous);
+        }
+        weight += weigh(key, text);
+        evict();
+    }
+
+    public synchronized void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+        evict();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, String>> it = entries.entrySet().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            Map.Entry<String, String> en = it.next();
+            weight -= weigh(en.getKey(), en.getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+}
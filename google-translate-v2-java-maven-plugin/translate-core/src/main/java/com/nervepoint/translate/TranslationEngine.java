@@ -0,0 +1,1740 @@
+package com.nervepoint.translate;
+
+import com.nervepoint.translate.runtime.BinaryBundleControl;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Translates the resource bundles found in a source directory into each of
+ * the target languages, using a cache of previous translations so only new
+ * or changed texts are sent to the {@link TranslationBackend}.
+ * <p>
+ * Configure with the setters, then call {@link #run()}. An engine may be run
+ * more than once, keeping its backend (and with it any connections) between
+ * runs.
+ *
+ * @author Lee David Painter
+ * @author Brett Smith
+ */
+public class TranslationEngine {
+// ------------------------------ FIELDS ------------------------------
+
+    private final TranslateLog log;
+
+    private File sourceDirectory;
+    private File targetDirectory;
+    private File cacheDirectory;
+    private File writeCacheDirectory;
+    private File masterCacheDirectory;
+    private String sourceLanguage = "en";
+    private String languages;
+    private String[] includes;
+    private String[] excludes;
+    private boolean recurse;
+    private boolean failOnMissingSourceDir;
+    private List<String> noTranslatePatterns = new ArrayList<String>();
+    private String backendName = "google-v2";
+    private String apikey;
+    private ClassLoader backendClassLoader = TranslationEngine.class.getClassLoader();
+    private long maxTranslationTime;
+    private long maxCharactersPerBuild;
+    private int segmentThreshold;
+    private String translationMemory = "off";
+    private float translationMemoryThreshold = 0.9f;
+    private boolean retranslateMemoryMatches;
+    private boolean compactCache;
+    private List<String> keepRefs = new ArrayList<String>();
+    private String remoteCacheUrl;
+    private boolean remoteCacheWrite = true;
+    private int remoteCacheTimeout = 10000;
+    private String remoteCacheToken;
+    private int shardIndex;
+    private int shardCount = 1;
+    private String bundleFormat = "properties";
+    private Set<String> bundleFormats;
+    private File generatedSourceDirectory;
+    private double hedgePercentile;
+    private boolean normalizeCacheKeys;
+    private double hedgeMaxRate = 0.1;
+    private boolean pipeline;
+    private int pipelineLoadThreads = 2;
+    private int pipelineTranslateThreads = 4;
+    private int pipelineWriteThreads = 1;
+    private int pipelineQueueSize = 16;
+    private int pipelineMaxInFlightCharacters = 200000;
+    private boolean virtualThreads;
+    private int maxConcurrentRequests = 16;
+    private long sharedCacheSize;
+    private File cacheSnapshotFile;
+    private long progressInterval = 10;
+    private boolean parallelScan;
+    private File scanIndexFile;
+
+    private BundleCache bundleCache;
+
+    /**
+     * The bundle cache in use by this run, the one given or the one shared
+     * in the JVM, if any.
+     */
+    private BundleCache files;
+
+    private TranslationBackendFactory backendFactory;
+
+    private TranslationBackend backend;
+
+    private PatternReplacer replacer;
+
+    private RemoteCache remoteCache;
+
+    private TranslationCache translationCache;
+
+    private CacheSnapshot cacheSnapshot;
+
+    private ProgressReporter progress;
+
+    private BundleScanner scanner;
+
+    private String[] scannerIncludes;
+
+    private String[] scannerExcludes;
+
+    private final List<String> restoreFailures = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * Hits and misses of this engine's lookups, as other engines in the JVM
+     * use the same shared cache.
+     */
+    private final AtomicLong translationCacheHits = new AtomicLong();
+
+    private final AtomicLong translationCacheMisses = new AtomicLong();
+
+    private CacheCompactor compactor;
+
+    private final AtomicInteger compacted = new AtomicInteger();
+
+    private Map<String, TranslationMemory> memories;
+
+    private final AtomicInteger memoryMatches = new AtomicInteger();
+
+    private final AtomicLong memoryCharacters = new AtomicLong();
+
+    private Segmenter segmenter;
+
+    private TranslationBudget budget;
+
+    private final AtomicInteger totalPending = new AtomicInteger();
+
+    private final AtomicInteger overridden = new AtomicInteger();
+
+    private final AtomicLong overriddenCharacters = new AtomicLong();
+
+    private PipelineStage loadStage;
+
+    private PipelineStage translateStage;
+
+    private PipelineStage writeStage;
+
+    private Semaphore inFlightCharacters;
+
+    private final AtomicReference<Throwable> pipelineFailure = new AtomicReference<Throwable>();
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public TranslationEngine(TranslateLog log) {
+        this.log = log;
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    public void setSourceDirectory(File sourceDirectory) {
+        this.sourceDirectory = sourceDirectory;
+    }
+
+    public void setTargetDirectory(File targetDirectory) {
+        this.targetDirectory = targetDirectory;
+    }
+
+    /**
+     * Folder holding the cache for the bundles being translated.
+     */
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Folder cache changes are written to, if not the cache directory itself
+     * (as for a sharded build).
+     */
+    public void setWriteCacheDirectory(File writeCacheDirectory) {
+        this.writeCacheDirectory = writeCacheDirectory;
+    }
+
+    /**
+     * Top level cache folder, shared by all projects. The translation memory
+     * is kept here.
+     */
+    public void setMasterCacheDirectory(File masterCacheDirectory) {
+        this.masterCacheDirectory = masterCacheDirectory;
+    }
+
+    public void setSourceLanguage(String sourceLanguage) {
+        this.sourceLanguage = sourceLanguage;
+    }
+
+    /**
+     * @param languages comma separated list of languages to translate to
+     */
+    public void setLanguages(String languages) {
+        this.languages = languages;
+    }
+
+    public void setIncludes(String[] includes) {
+        this.includes = includes;
+    }
+
+    public void setExcludes(String[] excludes) {
+        this.excludes = excludes;
+    }
+
+    public void setRecurse(boolean recurse) {
+        this.recurse = recurse;
+    }
+
+    public void setFailOnMissingSourceDir(boolean failOnMissingSourceDir) {
+        this.failOnMissingSourceDir = failOnMissingSourceDir;
+    }
+
+    public void setNoTranslatePatterns(List<String> noTranslatePatterns) {
+        this.noTranslatePatterns = noTranslatePatterns;
+    }
+
+    /**
+     * Use an already configured replacer instead of creating one from the
+     * no translate patterns, so its compiled patterns can be reused.
+     */
+    public void setReplacer(PatternReplacer replacer) {
+        this.replacer = replacer;
+    }
+
+    /**
+     * Keep parsed bundles and caches in memory, for when the engine is run
+     * many times by the same process.
+     */
+    public void setBundleCache(BundleCache bundleCache) {
+        this.bundleCache = bundleCache;
+    }
+
+    /**
+     * @param backendName name of the {@link TranslationBackendFactory} to use
+     */
+    public void setBackendName(String backendName) {
+        this.backendName = backendName;
+    }
+
+    public void setBackendClassLoader(ClassLoader backendClassLoader) {
+        this.backendClassLoader = backendClassLoader;
+    }
+
+    /**
+     * Use this backend rather than looking one up by name.
+     */
+    public void setBackendFactory(TranslationBackendFactory backendFactory) {
+        this.backendFactory = backendFactory;
+        this.backend = null;
+    }
+
+    public void setApikey(String apikey) {
+        this.apikey = apikey;
+    }
+
+    /**
+     * @param maxTranslationTime maximum time to spend translating in seconds, or zero for no limit
+     */
+    public void setMaxTranslationTime(long maxTranslationTime) {
+        this.maxTranslationTime = maxTranslationTime;
+    }
+
+    public void setMaxCharactersPerBuild(long maxCharactersPerBuild) {
+        this.maxCharactersPerBuild = maxCharactersPerBuild;
+    }
+
+    public void setSegmentThreshold(int segmentThreshold) {
+        this.segmentThreshold = segmentThreshold;
+    }
+
+    /**
+     * @param translationMemory one of <code>off</code>, <code>report</code> or <code>apply</code>.
+     *                          Matches applied from the memory are cached as the
+     *                          translation, unless they are to be retranslated,
+     *                          see {@link #setRetranslateMemoryMatches(boolean)}.
+     */
+    public void setTranslationMemory(String translationMemory) {
+        this.translationMemory = translationMemory;
+    }
+
+    public void setTranslationMemoryThreshold(float translationMemoryThreshold) {
+        this.translationMemoryThreshold = translationMemoryThreshold;
+    }
+
+    /**
+     * @param retranslateMemoryMatches cache near matches applied from the
+     *                                 translation memory as provisional, and
+     *                                 translate them properly once there is
+     *                                 budget to spare. This is always done when
+     *                                 a translation budget is set. Exact matches
+     *                                 are never retranslated.
+     */
+    public void setRetranslateMemoryMatches(boolean retranslateMemoryMatches) {
+        this.retranslateMemoryMatches = retranslateMemoryMatches;
+    }
+
+    public void setCompactCache(boolean compactCache) {
+        this.compactCache = compactCache;
+    }
+
+    public void setKeepRefs(List<String> keepRefs) {
+        this.keepRefs = keepRefs;
+    }
+
+    public void setRemoteCacheUrl(String remoteCacheUrl) {
+        this.remoteCacheUrl = remoteCacheUrl;
+    }
+
+    public void setRemoteCacheWrite(boolean remoteCacheWrite) {
+        this.remoteCacheWrite = remoteCacheWrite;
+    }
+
+    public void setRemoteCacheTimeout(int remoteCacheTimeout) {
+        this.remoteCacheTimeout = remoteCacheTimeout;
+    }
+
+    /**
+     * @param remoteCacheToken token the remote cache needs before it will store translations
+     */
+    public void setRemoteCacheToken(String remoteCacheToken) {
+        this.remoteCacheToken = remoteCacheToken;
+    }
+
+    public void setShardIndex(int shardIndex) {
+        this.shardIndex = shardIndex;
+    }
+
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * @param bundleFormat how to write translated bundles, a comma separated
+     *                     list of <code>properties</code>, <code>class</code>
+     *                     (Java source for a compiled bundle, see
+     *                     {@link BundleClassWriter}) and <code>binary</code>
+     *                     (see {@link BinaryBundleWriter})
+     */
+    public void setBundleFormat(String bundleFormat) {
+        this.bundleFormat = bundleFormat;
+    }
+
+    /**
+     * @param hedgePercentile percentile of recent request latency after which
+     *                        a slow request is sent again, or zero to never
+     *                        do so. See {@link HedgedTranslationBackend}.
+     */
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * @param hedgeMaxRate most requests that may be sent again, as a fraction of all requests
+     */
+    public void setHedgeMaxRate(double hedgeMaxRate) {
+        this.hedgeMaxRate = hedgeMaxRate;
+    }
+
+    /**
+     * Normalize texts before they are looked up in the cache and translated,
+     * see {@link TextNormalizer}.
+     */
+    public void setNormalizeCacheKeys(boolean normalizeCacheKeys) {
+        this.normalizeCacheKeys = normalizeCacheKeys;
+    }
+
+    /**
+     * Folder to write the source of compiled bundles to.
+     */
+    public void setGeneratedSourceDirectory(File generatedSourceDirectory) {
+        this.generatedSourceDirectory = generatedSourceDirectory;
+    }
+
+    /**
+     * Run bundles through a pipeline of stages (load and diff, translate,
+     * write) working concurrently, rather than one bundle at a time.
+     */
+    public void setPipeline(boolean pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    public void setPipelineLoadThreads(int pipelineLoadThreads) {
+        this.pipelineLoadThreads = pipelineLoadThreads;
+    }
+
+    public void setPipelineTranslateThreads(int pipelineTranslateThreads) {
+        this.pipelineTranslateThreads = pipelineTranslateThreads;
+    }
+
+    public void setPipelineWriteThreads(int pipelineWriteThreads) {
+        this.pipelineWriteThreads = pipelineWriteThreads;
+    }
+
+    /**
+     * @param pipelineQueueSize how many bundles may wait in front of each pipeline stage
+     */
+    public void setPipelineQueueSize(int pipelineQueueSize) {
+        this.pipelineQueueSize = pipelineQueueSize;
+    }
+
+    /**
+     * @param pipelineMaxInFlightCharacters most characters of untranslated text
+     *                                      the pipeline holds at once. Loading
+     *                                      waits while this many are in flight.
+     */
+    public void setPipelineMaxInFlightCharacters(int pipelineMaxInFlightCharacters) {
+        this.pipelineMaxInFlightCharacters = pipelineMaxInFlightCharacters;
+    }
+
+    /**
+     * Run the pipeline on virtual threads where the JVM has them (Java 21 and
+     * later), starting one for each bundle loaded, each batch translated and
+     * each bundle written, instead of using fixed size thread pools. Older
+     * JVMs carry on with the pipeline or sequential translation as configured.
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * @param maxConcurrentRequests most requests sent to the backend at once
+     *                              when running on virtual threads. Set this
+     *                              from the API quota.
+     */
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * @param sharedCacheSize most memory, in bytes, for translations kept in
+     *                        memory for later runs in the same JVM, see
+     *                        {@link TranslationCache}, and as much again for
+     *                        the parsed bundles and cache files, so unchanged
+     *                        ones are not read again, see {@link BundleCache}.
+     *                        Zero turns it off.
+     */
+    public void setSharedCacheSize(long sharedCacheSize) {
+        this.sharedCacheSize = sharedCacheSize;
+    }
+
+    /**
+     * Snapshot of the cache folder (see {@link CacheSnapshot}) to use as a
+     * read-only tier beneath it. Entries in the cache folder win, and new
+     * translations are written to the cache folder.
+     */
+    public void setCacheSnapshot(File cacheSnapshotFile) {
+        this.cacheSnapshotFile = cacheSnapshotFile;
+    }
+
+    /**
+     * @param progressInterval least time between progress reports, in seconds
+     */
+    public void setProgressInterval(long progressInterval) {
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * List the folders of the source directory on several threads.
+     */
+    public void setParallelScan(boolean parallelScan) {
+        this.parallelScan = parallelScan;
+    }
+
+    /**
+     * File to keep the folder listings of the source directory in between
+     * runs, so folders that haven't changed aren't listed again. See
+     * {@link BundleScanner}.
+     */
+    public void setScanIndex(File scanIndexFile) {
+        this.scanIndexFile = scanIndexFile;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * Translate every bundle in the source directory.
+     */
+    public void run() throws IOException {
+        setUp();
+        startPipeline();
+        try {
+            processDirectory(sourceDirectory, targetDirectory,
+                    cacheDirectory, writeCacheDirectory);
+            drainPipeline();
+        } finally {
+            stopPipeline();
+        }
+        report();
+    }
+
+    /**
+     * Translate only the bundles affected by changes to the given files, which
+     * may be source bundles or their override files. Unchanged texts in those
+     * bundles come from the cache as usual.
+     *
+     * @param changedFiles paths of the changed files relative to the source directory
+     */
+    public void run(Collection<String> changedFiles) throws IOException {
+        setUp();
+        if (!sourceDirectory.exists()) {
+            return;
+        }
+        startPipeline();
+        try {
+            processChanged(changedFiles);
+            drainPipeline();
+        } finally {
+            stopPipeline();
+        }
+        report();
+    }
+
+    private void processChanged(Collection<String> changedFiles) throws IOException {
+        for (String fileName : scan(sourceDirectory)) {
+            String path = fileName.replace(File.separatorChar, '/');
+            int lidx = path.lastIndexOf('/');
+            String dir = path.substring(0, lidx + 1);
+            String base = getBaseName(path.substring(lidx + 1));
+            for (String changed : changedFiles) {
+                changed = changed.replace(File.separatorChar, '/');
+                if (changed.equals(path) || (changed.startsWith(dir + base + "_")
+                        && changed.indexOf('/', dir.length()) == -1)) {
+                    progress.expect(new StringTokenizer(languages, ",").countTokens());
+                    processFile(sourceDirectory, fileName, targetDirectory,
+                            cacheDirectory, writeCacheDirectory);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void setUp() throws IOException {
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("shardIndex must be between 0 and "
+                    + (shardCount - 1) + " (shardCount is " + shardCount + ")");
+        }
+        if (writeCacheDirectory == null) {
+            writeCacheDirectory = cacheDirectory;
+        }
+        if (hedgePercentile < 0 || hedgePercentile > 100) {
+            throw new IllegalArgumentException("hedgePercentile must be between 0 and 100");
+        }
+        bundleFormats = new HashSet<String>();
+        StringTokenizer formats = new StringTokenizer(bundleFormat, ", ");
+        while (formats.hasMoreTokens()) {
+            String format = formats.nextToken();
+            if (!"properties".equals(format) && !"class".equals(format) && !"binary".equals(format)) {
+                throw new IllegalArgumentException("bundleFormat must be a list of properties, class or binary");
+            }
+            bundleFormats.add(format);
+        }
+        if (bundleFormats.contains("class") && generatedSourceDirectory == null) {
+            throw new IllegalArgumentException("generatedSourceDirectory is required for bundleFormat class");
+        }
+
+        compacted.set(0);
+        memoryMatches.set(0);
+        memoryCharacters.set(0);
+        totalPending.set(0);
+        overridden.set(0);
+        overriddenCharacters.set(0);
+
+        if (backendFactory == null) {
+            backendFactory = TranslationBackends.getFactory(backendName, backendClassLoader);
+        }
+        budget = new TranslationBudget(maxTranslationTime * 1000, maxCharactersPerBuild);
+
+        if (replacer == null) {
+            replacer = new PatternReplacer();
+            for (String p : noTranslatePatterns) {
+                log.info("Will not translate content matching " + p);
+                replacer.addPattern(p);
+            }
+        }
+        if (segmentThreshold > 0) {
+            segmenter = new Segmenter(sourceLanguage);
+        }
+        if (remoteCacheUrl != null && remoteCacheUrl.length() > 0 && !isFake()) {
+            log.info("Using remote cache " + remoteCacheUrl);
+            remoteCache = new RemoteCache(log, remoteCacheUrl, remoteCacheWrite, remoteCacheTimeout);
+            remoteCache.setToken(remoteCacheToken);
+        }
+        progress = new ProgressReporter(log, progressInterval * 1000);
+        progress.start();
+        restoreFailures.clear();
+        translationCacheHits.set(0);
+        translationCacheMisses.set(0);
+
+        if (cacheSnapshotFile != null && cacheSnapshot == null) {
+            cacheSnapshot = CacheSnapshot.load(cacheSnapshotFile);
+            log.info("Loaded " + cacheSnapshot.size() + " cache files from snapshot " + cacheSnapshotFile);
+        }
+        if (sharedCacheSize > 0 && !isFake()) {
+            translationCache = TranslationCache.getShared(sharedCacheSize);
+        } else {
+            translationCache = null;
+        }
+        if (bundleCache != null) {
+            files = bundleCache;
+        } else if (sharedCacheSize > 0 && !isFake()) {
+            files = BundleCache.getShared(sharedCacheSize);
+        } else {
+            files = null;
+        }
+        if (compactCache) {
+            compactor = new CacheCompactor(log, keepRefs);
+            compactor.setSegmenter(new Segmenter(sourceLanguage), replacer);
+        }
+        if (translationMemory != null && !"off".equals(translationMemory)) {
+            if (!"report".equals(translationMemory) && !"apply".equals(translationMemory)) {
+                throw new IllegalArgumentException("translationMemory must be one of off, report or apply");
+            }
+            memories = new HashMap<String, TranslationMemory>();
+        }
+    }
+
+    private void report() throws IOException {
+        progress.finish();
+        if (backend instanceof HedgedTranslationBackend) {
+            HedgedTranslationBackend hedged = (HedgedTranslationBackend) backend;
+            log.info("Hedged " + hedged.getHedges() + " of " + hedged.getRequests()
+                    + " translation requests, " + hedged.getHedgeWins() + " hedged requests answered first");
+        }
+        if (overridden.get() > 0) {
+            log.info("Used " + overridden.get() + " override translations, saving "
+                    + overriddenCharacters.get() + " characters of translation");
+        }
+        if (memories != null) {
+            log.info("Translation memory " + ("apply".equals(translationMemory) ? "matched " : "could match ")
+                    + memoryMatches.get() + " texts, " + memoryCharacters.get() + " characters");
+            if (!isFake()) {
+                for (TranslationMemory memory : memories.values()) {
+                    memory.save();
+                }
+            }
+        }
+        if (translationCache != null) {
+            long hits = translationCacheHits.get();
+            long misses = translationCacheMisses.get();
+            if (hits + misses > 0) {
+                log.info("Shared cache had " + hits + " of " + (hits + misses) + " texts, holding "
+                        + translationCache.size() + " translations in " + translationCache.getWeight() / 1024 + "KB");
+            }
+        }
+        if (remoteCache != null) {
+            log.info("Remote cache had " + remoteCache.getHits() + " of "
+                    + (remoteCache.getHits() + remoteCache.getMisses()) + " texts");
+        }
+        if (compacted.get() > 0) {
+            log.info("Removed " + compacted.get() + " stale cache entries");
+        }
+        if (!restoreFailures.isEmpty()) {
+            synchronized (restoreFailures) {
+                StringBuilder b = new StringBuilder();
+                for (int i = 0; i < restoreFailures.size() && i < 10; i++) {
+                    b.append("\n    ").append(restoreFailures.get(i));
+                }
+                if (restoreFailures.size() > 10) {
+                    b.append("\n    ...");
+                }
+                log.warn(restoreFailures.size() + " texts lost their untranslatable content in translation, even when"
+                        + " sent again, and are left untranslated until the next build:" + b);
+            }
+        }
+        if (totalPending.get() > 0) {
+            log.warn("Translation budget used up after " + budget.getCharacters()
+                    + " characters, " + totalPending.get() + " texts are pending translation");
+        }
+    }
+
+
+    private void processDirectory(File sourceDir, File destinationDir,
+                                  File sourceCacheDir, File writeCacheDir) throws IOException {
+        log.info("Using source directory " + sourceDir.getAbsolutePath());
+        log.info(
+                "Using target directory " + destinationDir.getAbsolutePath());
+
+        destinationDir.mkdirs();
+
+        if (!sourceDir.exists()) {
+            if (failOnMissingSourceDir) {
+                throw new IOException(
+                        "sourceDirectory "
+                                + sourceDirectory
+                                + " does not exist. To ignore this setting set failOnMissingSourceDir=false");
+            }
+            log.warn(
+                    "sourceDirectory " + sourceDirectory + " does not exist");
+            return;
+        }
+
+        String[] included = scan(sourceDir);
+        log.info("Found " + included.length + " included files");
+        progress.expect(included.length * new StringTokenizer(languages, ",").countTokens());
+
+        for (String fileName : included) {
+            processFile(sourceDir, fileName, destinationDir, sourceCacheDir, writeCacheDir);
+        }
+    }
+
+    private String[] scan(File sourceDir) throws IOException {
+        String[] patterns = includes;
+        if (patterns == null || patterns.length == 0) {
+            if (recurse) {
+                patterns = new String[]{"*_" + sourceLanguage + ".properties"};
+            } else {
+                patterns = new String[]{"**/*" + sourceLanguage + ".properties"};
+            }
+        }
+        /* The scanner keeps its index in memory, so is reused by later runs */
+        if (scanner == null || !Arrays.equals(patterns, scannerIncludes) || !Arrays.equals(excludes, scannerExcludes)) {
+            scanner = new BundleScanner(patterns, excludes);
+            scannerIncludes = patterns;
+            scannerExcludes = excludes;
+        }
+        scanner.setParallelism(parallelScan ? Runtime.getRuntime().availableProcessors() : 1);
+        scanner.setIndexFile(scanIndexFile);
+        long started = System.currentTimeMillis();
+        String[] included = scanner.scan(sourceDir);
+        if (log.isDebugEnabled()) {
+            log.debug("Scanned " + sourceDir + " in " + (System.currentTimeMillis() - started) + "ms, listed "
+                    + scanner.getListed() + " folders and reused " + scanner.getReused() + " unchanged ones");
+        }
+        return included;
+    }
+
+    private String getBaseName(String name) {
+        int idx = name.indexOf(".properties");
+
+        String base = name.substring(0, idx);
+        String lang = "_" + sourceLanguage;
+        if (base.endsWith(lang)) {
+            base = base.substring(0, base.length() - lang.length());
+        }
+        return base;
+    }
+
+    private void processFile(File sourceDir, String fileName, File destinationDir,
+                             File sourceCacheDir, File writeCacheDir) throws IOException {
+        File p = new File(sourceDir, fileName);
+        if (p.isFile()) {
+            int lidx = fileName.lastIndexOf('/');
+            String dir = lidx == -1 ? "" : fileName.substring(0, lidx);
+
+            String base = getBaseName(p.getName());
+
+            File dest = dir.equals("") ? destinationDir : new File(
+                    destinationDir, dir);
+            File destCache = dir.equals("") ? sourceCacheDir : new File(
+                    sourceCacheDir, dir);
+            File writeCache = dir.equals("") ? writeCacheDir : new File(
+                    writeCacheDir, dir);
+
+            if (log.isDebugEnabled()) {
+                log.debug("    " + fileName + " -> " + dest.getAbsolutePath()
+                        + " [" + destCache.getAbsolutePath() + "]");
+            }
+
+            dest.mkdirs();
+            translateFile(p, dir, base, dest, destCache, writeCache);
+        }
+    }
+
+    private void translateFile(File sourceFile, String dir, String baseName,
+                               File desintationDir, File sourceCacheDir, File writeCacheDir) throws IOException {
+        StringTokenizer t = new StringTokenizer(languages, ",");
+        while (t.hasMoreTokens()) {
+            String l = t.nextToken();
+
+            if (baseName.endsWith("_" + l)) {
+                log.debug("Skipping " + baseName + ".properties as its an override file.");
+                progress.skip();
+                continue;
+            }
+
+            if (!isInShard(dir, baseName, l)) {
+                log.debug("Skipping " + baseName + " for " + l + " as it belongs to another shard");
+                progress.skip();
+                continue;
+            }
+
+            translateFileToLanguage(sourceFile, dir, baseName, desintationDir,
+                    sourceCacheDir, writeCacheDir, l);
+        }
+    }
+
+    /**
+     * Work out whether a bundle / language pair should be translated by this
+     * shard. This only depends on the bundle path and language, so every node
+     * in a sharded build agrees on who does what.
+     */
+    private boolean isInShard(String dir, String baseName, String language) {
+        if (shardCount < 2) {
+            return true;
+        }
+        String unit = (dir.equals("") ? "" : dir + "/") + baseName + "_" + language;
+        return (unit.hashCode() & Integer.MAX_VALUE) % shardCount == shardIndex;
+    }
+
+    private void translateFileToLanguage(File sourceFile, String dir, String baseName,
+                                         File destinationDir, File sourceCacheDir, File writeCacheDir,
+                                         String language)
+            throws IOException {
+        if (loadStage != null) {
+            submit(sourceFile, dir, baseName, destinationDir, sourceCacheDir, writeCacheDir, language);
+            return;
+        }
+        BundleJob job = prepare(sourceFile, dir, baseName, destinationDir, sourceCacheDir, writeCacheDir, language);
+        translate(job);
+        finish(job);
+    }
+
+    private void startPipeline() {
+        pipelineFailure.set(null);
+        if (!pipeline && !virtualThreads) {
+            return;
+        }
+        if (pipelineMaxInFlightCharacters < 1) {
+            throw new IllegalArgumentException("pipelineMaxInFlightCharacters must be at least 1");
+        }
+        inFlightCharacters = new Semaphore(pipelineMaxInFlightCharacters, true);
+        if (virtualThreads) {
+            /*
+             * Loading and writing are only bounded by the queue size, the
+             * in-flight character limit keeps memory in check. Requests are
+             * bounded by the quota.
+             */
+            loadStage = PipelineStage.virtual("load", pipelineQueueSize);
+            if (loadStage != null) {
+                log.info("Translating on virtual threads, at most " + maxConcurrentRequests + " requests at once");
+                translateStage = PipelineStage.virtual("translate", maxConcurrentRequests);
+                writeStage = PipelineStage.virtual("write", pipelineQueueSize);
+                return;
+            }
+            log.info("Virtual threads need Java 21 or later, "
+                    + (pipeline ? "using the thread pool pipeline" : "translating one bundle at a time"));
+            if (!pipeline) {
+                inFlightCharacters = null;
+                return;
+            }
+        }
+        log.info("Translating with a pipeline of " + pipelineLoadThreads + " load, " + pipelineTranslateThreads
+                + " translate and " + pipelineWriteThreads + " write threads");
+        loadStage = new PipelineStage("load", pipelineLoadThreads, pipelineQueueSize);
+        translateStage = new PipelineStage("translate", pipelineTranslateThreads, pipelineQueueSize);
+        writeStage = new PipelineStage("write", pipelineWriteThreads, pipelineQueueSize);
+    }
+
+    /**
+     * Wait for every bundle given to the pipeline to be written, each stage
+     * in turn as nothing more can arrive from the one before it.
+     */
+    private void drainPipeline() throws IOException {
+        if (loadStage == null) {
+            return;
+        }
+        loadStage.drain();
+        translateStage.drain();
+        writeStage.drain();
+        checkPipeline();
+    }
+
+    private void stopPipeline() {
+        if (loadStage == null) {
+            return;
+        }
+        loadStage.abort();
+        translateStage.abort();
+        writeStage.abort();
+        loadStage = null;
+        translateStage = null;
+        writeStage = null;
+        inFlightCharacters = null;
+    }
+
+    /**
+     * Throw the first failure from any pipeline stage.
+     */
+    private void checkPipeline() throws IOException {
+        Throwable t = pipelineFailure.get();
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        } else if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (t != null) {
+            throw new IOException("Translation pipeline failed", t);
+        }
+    }
+
+    /**
+     * Hand a bundle to the pipeline. Once loaded, a bundle waits for its
+     * characters to fit under the in-flight limit before going on to be
+     * translated, and gives them back when it has been written. A bundle
+     * bigger than the whole limit takes all of it.
+     */
+    private void submit(final File sourceFile, final String dir, final String baseName,
+                        final File destinationDir, final File sourceCacheDir, final File writeCacheDir,
+                        final String language) throws IOException {
+        checkPipeline();
+        final PipelineStage translateStage = this.translateStage;
+        final PipelineStage writeStage = this.writeStage;
+        final Semaphore inFlightCharacters = this.inFlightCharacters;
+        loadStage.submit(new Runnable() {
+            public void run() {
+                if (pipelineFailure.get() != null) {
+                    return;
+                }
+                final BundleJob job;
+                final int weight;
+                try {
+                    job = prepare(sourceFile, dir, baseName, destinationDir, sourceCacheDir, writeCacheDir, language);
+                    weight = Math.min(job.characters, pipelineMaxInFlightCharacters);
+                    inFlightCharacters.acquire(weight);
+                } catch (Throwable t) {
+                    pipelineFailure.compareAndSet(null, t);
+                    return;
+                }
+                final Runnable write = new Runnable() {
+                    public void run() {
+                        try {
+                            if (pipelineFailure.get() == null) {
+                                finish(job);
+                            }
+                        } catch (Throwable t) {
+                            pipelineFailure.compareAndSet(null, t);
+                        } finally {
+                            inFlightCharacters.release(weight);
+                        }
+                    }
+                };
+                try {
+                    List<Batch> batches = batches(job);
+                    if (batches.isEmpty()) {
+                        writeStage.submit(write);
+                    }
+                    final AtomicInteger remaining = new AtomicInteger(batches.size());
+                    for (final Batch batch : batches) {
+                        translateStage.submit(new Runnable() {
+                            public void run() {
+                                try {
+                                    if (pipelineFailure.get() == null) {
+                                        translate(batch);
+                                    }
+                                } catch (Throwable t) {
+                                    pipelineFailure.compareAndSet(null, t);
+                                }
+                                if (remaining.decrementAndGet() == 0) {
+                                    try {
+                                        writeStage.submit(write);
+                                    } catch (Throwable t) {
+                                        pipelineFailure.compareAndSet(null, t);
+                                        inFlightCharacters.release(weight);
+                                    }
+                                }
+                            }
+                        });
+                    }
+                } catch (Throwable t) {
+                    pipelineFailure.compareAndSet(null, t);
+                    inFlightCharacters.release(weight);
+                }
+            }
+        });
+    }
+
+    /**
+     * Load a bundle, its override file and its cache, and work out which
+     * texts need translating.
+     */
+    private BundleJob prepare(File sourceFile, String dir, String baseName,
+                              File destinationDir, File sourceCacheDir, File writeCacheDir,
+                              String language)
+            throws IOException {
+        sourceCacheDir.mkdirs();
+
+        log.debug("Translating " + sourceFile.getName() + " to " + language);
+
+        File overrideFile = new File(sourceFile.getParentFile(), baseName + "_"
+                + language + ".properties");
+        File previousTranslation = new File(sourceCacheDir, baseName + "_"
+                + language + ".properties");
+
+        PropertiesWithoutComments sourceProperties;
+        PropertiesWithoutComments translated = new PropertiesWithoutComments();
+        PropertiesWithoutComments override;
+        PropertiesWithoutComments cached;
+
+        sourceProperties = loadProperties(sourceFile, "source", true);
+        override = loadProperties(overrideFile, "override", false);
+        cached = loadProperties(previousTranslation, "cache", false);
+        Map<Object, Object> loadedCache = CacheFiles.snapshot(cached);
+
+        boolean needCacheWrite = false;
+        int pending = 0;
+        int texts = 0;
+        int cachedTexts = 0;
+
+        /**
+         * The section below is more efficient, performing multiple translations in
+         * each API call, but there are limits to the number of texts we can send in a
+         * single call, thus, this will need improving before we can use it.
+         */
+        TranslationMemory memory = getTranslationMemory(language);
+
+        List<String> toTranslateValues = new ArrayList<String>();
+        List<String> toTranslateKeys = new ArrayList<String>();
+        List<String> toTranslateOriginals = new ArrayList<String>();
+        Map<String, List<Segmenter.Segment>> segmented = new LinkedHashMap<String, List<Segmenter.Segment>>();
+        Set<String> queuedSegments = new HashSet<String>();
+        int characters = 0;
+        for (String name : sourceProperties.stringPropertyNames()) {
+            // The unprocessed content from the base resource file
+            String originalContent = new String(sourceProperties.getProperty(name).getBytes("ISO-8859-1"), "UTF-8");
+
+            /*
+             * Keys that have a hand written translation in the override file are
+             * never sent for translation, nor cached.
+             */
+            if (override.containsKey(name)) {
+                translated.put(name, new String(override.getProperty(name).getBytes("ISO-8859-1"), "UTF-8"));
+                overriddenCharacters.addAndGet(originalContent.length());
+                overridden.incrementAndGet();
+                continue;
+            }
+            texts++;
+
+			/*
+             * We process the source property for any patterns we don't want to
+			 * translate. These are sent to Google and the returned content is
+			 * processed again, putting the untranslatable text back where it
+			 * was.
+			 */
+            String processed = replacer.preProcess(originalContent);
+
+            if (normalizeCacheKeys && TextNormalizer.normalize(processed).getCore().length() == 0) {
+                // Only white space, which is put back as it is
+                translated.put(name, originalContent);
+                cachedTexts++;
+                continue;
+            }
+
+            String provisional = null;
+            if (cached.containsKey(name)) {
+                String text = TextNormalizer.fromCache(cached.getProperty(name), processed, normalizeCacheKeys);
+
+                if (text != null) {
+                    translated.put(name, replacer.postProcess(text, originalContent));
+                    if (memory != null) {
+                        memory.add(processed, text);
+                    }
+                    if (translationCache != null) {
+                        translationCache.put(contentKey(processed, language), text);
+                    }
+                    cachedTexts++;
+                    continue;
+                }
+                provisional = TranslationMemory.fromCache(cached.getProperty(name), processed);
+                if (provisional == null) {
+                    log.debug("Detected change to cached text for " + name);
+                } else if (!isRetranslatingMemoryMatches()) {
+                    translated.put(name, replacer.postProcess(provisional, originalContent));
+                    cachedTexts++;
+                    continue;
+                }
+            }
+
+            List<Segmenter.Segment> segments = null;
+            if (segmenter != null && processed.length() >= segmentThreshold) {
+                segments = segmenter.split(processed);
+                if (segments.size() < 2) {
+                    segments = null;
+                }
+            }
+
+            if (segments != null) {
+                /*
+                 * Long texts are translated a sentence at a time, with each sentence
+                 * cached under its own key. Only sentences that have changed need
+                 * translating, the whole text is put back together once the batches
+                 * are done.
+                 */
+                boolean deferred = false;
+                for (Segmenter.Segment segment : segments) {
+                    String sentence = segment.getText();
+                    String segmentKey = Segmenter.segmentKey(name, CacheFiles.hash(sentence));
+                    if (sentence.length() == 0 || cached.containsKey(segmentKey)
+                            || !queuedSegments.add(segmentKey)) {
+                        continue;
+                    }
+                    String shared = getShared(contentKey(sentence, language));
+                    if (shared != null) {
+                        cached.put(segmentKey, CacheFiles.hash(sentence) + "|" + shared);
+                        needCacheWrite = true;
+                        continue;
+                    }
+                    if (!budget.tryAcquire(sentence.length())) {
+                        deferred = true;
+                        break;
+                    }
+
+                    toTranslateKeys.add(segmentKey);
+                    toTranslateValues.add(sentence);
+                    toTranslateOriginals.add(null);
+
+                    characters += sentence.length();
+                }
+
+                if (deferred) {
+                    log.debug("Translation budget used up, deferring " + name);
+                    translated.put(name, originalContent);
+                    pending++;
+                } else {
+                    log.debug("Marking " + name + " for translation by sentence");
+                    segmented.put(name, segments);
+                }
+            } else {
+                String shared = getShared(contentKey(processed, language));
+                if (shared != null) {
+                    translated.put(name, replacer.postProcess(shared, originalContent));
+                    cached.put(name, CacheFiles.hash(processed) + "|" + shared);
+                    needCacheWrite = true;
+                    if (memory != null) {
+                        memory.add(processed, shared);
+                    }
+                    cachedTexts++;
+                    continue;
+                }
+
+                if (memory != null && provisional == null) {
+                    TranslationMemory.Match match = memory.find(processed, translationMemoryThreshold);
+                    if (match != null && PatternReplacer.countPlaceholders(match.getTarget())
+                            == PatternReplacer.countPlaceholders(processed)) {
+                        memoryMatches.incrementAndGet();
+                        memoryCharacters.addAndGet(processed.length());
+                        if ("apply".equals(translationMemory)) {
+                            if (log.isDebugEnabled()) {
+                                log.debug(String.format("Using translation memory for %s (%.0f%% match of '%s')",
+                                        name, match.getSimilarity() * 100, match.getSource()));
+                            }
+                            translated.put(name, replacer.postProcess(match.getTarget(), originalContent));
+                            if (match.getSimilarity() < 1 && isRetranslatingMemoryMatches()) {
+                                cached.put(name, TranslationMemory.toCache(processed, match.getTarget()));
+                            } else {
+                                cached.put(name, CacheFiles.hash(processed) + "|" + match.getTarget());
+                            }
+                            needCacheWrite = true;
+                            cachedTexts++;
+                            continue;
+                        }
+                        if (log.isDebugEnabled()) {
+                            log.debug(String.format("Translation memory has a %.0f%% match for %s: '%s' -> '%s'",
+                                    name, match.getSimilarity() * 100, match.getSource(), match.getTarget()));
+                        }
+                    }
+                }
+
+                if (!budget.tryAcquire(processed.length())) {
+                    if (provisional != null) {
+                        // Keep the match from the memory until it can be translated
+                        translated.put(name, replacer.postProcess(provisional, originalContent));
+                        cachedTexts++;
+                        continue;
+                    }
+                    /*
+                     * Out of budget, so use the source text for now. Nothing is cached for
+                     * this key, so the next build will pick it up as a miss again.
+                     */
+                    log.debug("Translation budget used up, deferring " + name);
+                    translated.put(name, originalContent);
+                    pending++;
+                    continue;
+                }
+
+                log.debug("Marking " + name + " for translation");
+
+                toTranslateKeys.add(name);
+                toTranslateValues.add(processed);
+                toTranslateOriginals.add(originalContent);
+
+                characters += processed.length();
+            }
+
+        }
+
+        BundleJob job = new BundleJob();
+        job.sourceFile = sourceFile;
+        job.dir = dir;
+        job.baseName = baseName;
+        job.destinationDir = destinationDir;
+        job.writeCacheFile = new File(writeCacheDir, previousTranslation.getName());
+        job.language = language;
+        job.sourceProperties = sourceProperties;
+        job.override = override;
+        job.cached = cached;
+        job.loadedCache = loadedCache;
+        job.translated = translated;
+        job.needCacheWrite = needCacheWrite;
+        job.pending.set(pending);
+        job.keys = toTranslateKeys;
+        job.values = toTranslateValues;
+        job.originals = toTranslateOriginals;
+        job.segmented = segmented;
+        job.characters = characters;
+        job.texts = texts;
+        job.cachedTexts = cachedTexts;
+        return job;
+    }
+
+    /**
+     * Send the texts a bundle needs translating to the backend, in batches.
+     */
+    private void translate(BundleJob job) throws IOException {
+        for (Batch batch : batches(job)) {
+            translate(batch);
+        }
+    }
+
+    /**
+     * Translate one batch. The results are kept with the batch until the
+     * bundle is finished, so batches translated concurrently still make the
+     * same bundle and cache files as translating them one after another.
+     * <p>
+     * Budget for the texts was reserved when the bundle was loaded, but the
+     * time allowed may have run out since, in which case the batch is not sent
+     * and its texts are left for the next build.
+     */
+    private void translate(Batch batch) throws IOException {
+        BundleJob job = batch.job;
+        if (budget.isOutOfTime()) {
+            log.debug("Translation budget used up, deferring " + batch.keys.size() + " texts");
+            for (int i = 0; i < batch.keys.size(); i++) {
+                String original = batch.originals.get(i);
+                if (original == null) {
+                    // A sentence, the text it is part of is counted when the bundle is finished
+                    job.deferredSegments.add(batch.keys.get(i));
+                } else {
+                    batch.translated.put(batch.keys.get(i), original);
+                    job.pending.incrementAndGet();
+                }
+            }
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Translating " + batch.characters + " characters"
+                    + (batch.last ? " [final translation for this module]" : ""));
+        }
+        translateBatch(batch.keys, batch.values, batch.originals, job.language, batch.translated, batch.cached,
+                job.dir.equals("") ? job.baseName : job.dir + "/" + job.baseName);
+        job.needCacheWrite = true;
+    }
+
+    /**
+     * Cut the texts a bundle needs translating into batches small enough
+     * for one request.
+     */
+    private List<Batch> batches(BundleJob job) {
+        List<Batch> batches = new ArrayList<Batch>();
+        Batch batch = null;
+        for (int i = 0; i < job.keys.size(); i++) {
+            if (batch == null) {
+                batch = new Batch(job);
+                batches.add(batch);
+            }
+            batch.keys.add(job.keys.get(i));
+            batch.values.add(job.values.get(i));
+            batch.originals.add(job.originals.get(i));
+            batch.characters += job.values.get(i).length();
+
+            if ((batch.characters > 4000) || (batch.keys.size() > 50)) {
+                batch = null;
+            }
+        }
+        if (!batches.isEmpty()) {
+            batches.get(batches.size() - 1).last = true;
+        }
+        job.batches = batches;
+        return batches;
+    }
+
+    /**
+     * Put a translated bundle together and write it, and its cache.
+     */
+    private void finish(BundleJob job) throws IOException {
+        File sourceFile = job.sourceFile;
+        String dir = job.dir;
+        String baseName = job.baseName;
+        File destinationDir = job.destinationDir;
+        String language = job.language;
+        PropertiesWithoutComments sourceProperties = job.sourceProperties;
+        PropertiesWithoutComments override = job.override;
+        PropertiesWithoutComments cached = job.cached;
+        PropertiesWithoutComments translated = job.translated;
+        boolean needCacheWrite = job.needCacheWrite;
+        int pending = job.pending.get();
+
+        if (job.batches != null) {
+            for (Batch batch : job.batches) {
+                translated.putAll(batch.translated);
+                cached.putAll(batch.cached);
+            }
+        }
+
+        for (Map.Entry<String, List<Segmenter.Segment>> en : job.segmented.entrySet()) {
+            String name = en.getKey();
+            StringBuilder b = new StringBuilder();
+            String originalContent = new String(sourceProperties.getProperty(name).getBytes("ISO-8859-1"), "UTF-8");
+            boolean complete = true;
+            boolean deferred = false;
+            for (Segmenter.Segment segment : en.getValue()) {
+                b.append(segment.getLeading());
+                if (segment.getText().length() > 0) {
+                    String segmentKey = Segmenter.segmentKey(name, CacheFiles.hash(segment.getText()));
+                    String c = cached.getProperty(segmentKey);
+                    if (c == null) {
+                        // A sentence that was deferred, or couldn't be translated, see translateBatch
+                        complete = false;
+                        deferred = job.deferredSegments.contains(segmentKey);
+                        break;
+                    }
+                    b.append(c.substring(c.indexOf('|') + 1));
+                }
+                b.append(segment.getTrailing());
+            }
+            if (!complete) {
+                translated.put(name, originalContent);
+                if (deferred) {
+                    pending++;
+                }
+                continue;
+            }
+            String text = b.toString();
+
+            translated.put(name, replacer.postProcess(text, originalContent));
+            cached.put(name, CacheFiles.hash(replacer.preProcess(originalContent)) + "|" + text);
+            needCacheWrite = true;
+        }
+
+        // Override keys that are not in the source bundle are still wanted in the output
+        for (String name : override.stringPropertyNames()) {
+            if (!translated.containsKey(name)) {
+                translated.put(name, new String(override.getProperty(name).getBytes("ISO-8859-1"), "UTF-8"));
+            }
+        }
+
+        if (compactor != null) {
+            int removed = compactor.compact(cached, compactor.getLiveKeys(sourceFile, sourceProperties));
+            if (removed > 0) {
+                log.debug("Removed " + removed + " stale entries from the cache");
+                compacted.addAndGet(removed);
+                needCacheWrite = true;
+            }
+        }
+
+        if (pending > 0) {
+            log.warn(pending + " texts in " + baseName + "_" + language
+                    + ".properties were left untranslated because the translation budget was used up."
+                    + " They will be translated by the next build.");
+            totalPending.addAndGet(pending);
+        }
+
+        boolean writeProperties = bundleFormats.contains("properties");
+        if (bundleFormats.contains("class")) {
+            File bundleClass = BundleClassWriter.write(generatedSourceDirectory, dir, baseName + "_" + language,
+                    translated);
+            if (bundleClass == null) {
+                log.warn("Cannot compile " + baseName + "_" + language
+                        + " as a class (names are not valid Java names, or it is too large), writing properties instead");
+                writeProperties = true;
+            } else {
+                log.debug("Wrote bundle class " + bundleClass.getAbsolutePath());
+            }
+        }
+
+        if (bundleFormats.contains("binary")) {
+            BinaryBundleWriter.write(new File(destinationDir, baseName + "_" + language + "."
+                    + BinaryBundleControl.SUFFIX), translated);
+        }
+
+        if (writeProperties) {
+            File target = new File(destinationDir, baseName + "_" + language
+                    + ".properties");
+
+            if (target.exists()) {
+                log.debug("Deleting existing target " + target.getName() + " as we have a new translation.");
+                target.delete();
+            }
+
+
+            FileOutputStream fileOutputStream = new FileOutputStream(target);
+            try {
+                translated.store(new OutputStreamWriter(
+                                fileOutputStream, "UTF-8"),
+                        "Auto generated by Google Translate V2 API maven plugin");
+            } finally {
+                fileOutputStream.close();
+            }
+        }
+
+        if (needCacheWrite && !isFake()) {
+            File cacheFile = job.writeCacheFile;
+            CacheFiles.store(cacheFile, job.loadedCache, cached,
+                    "Cache of auto generated google translations for Google Translate V2 API maven plugin");
+            if (files != null) {
+                files.invalidate(cacheFile);
+            }
+        }
+        progress.done(job.texts, job.cachedTexts);
+    }
+
+    /**
+     * Translate and cache a batch of texts, emptying the lists given. Texts
+     * with no original content are sentences of a longer text, these are only
+     * cached.
+     */
+    private void translateBatch(List<String> toTranslateKeys, List<String> toTranslateValues,
+                                List<String> toTranslateOriginals, String language,
+                                Map<Object, Object> translated, Map<Object, Object> cached, String bundle)
+            throws IOException {
+        TranslationMemory memory = getTranslationMemory(language);
+
+        /*
+         * With normalization, what is sent (and looked up remotely) is the
+         * normalized text, and the original white space is put back after
+         */
+        TextNormalizer[] normalized = new TextNormalizer[toTranslateValues.size()];
+        List<String> sources = toTranslateValues;
+        if (normalizeCacheKeys) {
+            sources = new ArrayList<String>();
+            for (int i = 0; i < normalized.length; i++) {
+                String processed = toTranslateValues.get(i);
+                if (toTranslateOriginals.get(i) != null) {
+                    TextNormalizer n = TextNormalizer.normalize(processed);
+                    if (n.isChanged(processed)) {
+                        normalized[i] = n;
+                        processed = n.getCore();
+                    }
+                }
+                sources.add(processed);
+            }
+        }
+
+        /*
+         * Anything the remote cache already has doesn't need sending to the API
+         */
+        String[] results = new String[sources.size()];
+        List<String> texts = sources;
+        if (remoteCache != null) {
+            List<String> keys = new ArrayList<String>();
+            for (String text : sources) {
+                keys.add(contentKey(text, language));
+            }
+            results = remoteCache.get(keys);
+            texts = new ArrayList<String>();
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    texts.add(sources.get(i));
+                }
+            }
+        }
+
+        boolean[] fetched = new boolean[results.length];
+        if (!texts.isEmpty()) {
+            int characters = 0;
+            for (String text : texts) {
+                characters += text.length();
+            }
+            Iterator<String> translations = translate(texts, sourceLanguage, language).iterator();
+            progress.translated(characters);
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    results[i] = translations.next();
+                    fetched[i] = true;
+                    if (log.isDebugEnabled()) {
+                        log.debug("Got translated text: " + results[i]);
+                    }
+                }
+            }
+        }
+
+        /*
+         * A translation that has lost some of its placeholders can't have the
+         * untranslatable content put back. Only those texts are sent again,
+         * the rest of the batch is kept.
+         */
+        for (int i = 0; i < results.length; i++) {
+            if (!keepsPlaceholders(results[i], sources.get(i))) {
+                results[i] = retranslate(sources.get(i), language);
+                fetched[i] = results[i] != null;
+            }
+        }
+        if (remoteCache != null) {
+            List<String> keys = new ArrayList<String>();
+            List<String> values = new ArrayList<String>();
+            for (int i = 0; i < results.length; i++) {
+                if (fetched[i]) {
+                    keys.add(contentKey(sources.get(i), language));
+                    values.add(results[i]);
+                }
+            }
+            remoteCache.put(keys, values);
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            // And now the bit where the original untranslatable text is put
+            // back
+            String name = toTranslateKeys.remove(0);
+            String processed = toTranslateValues.remove(0);
+            String original = toTranslateOriginals.remove(0);
+            if (results[i] == null) {
+                restoreFailures.add(bundle + "_" + language + " " + name);
+                if (original != null) {
+                    translated.put(name, original);
+                }
+                continue;
+            }
+            String translatedText = normalized[i] == null ? results[i] : normalized[i].restore(results[i]);
+
+            if (original != null) {
+                translated.put(name, replacer.postProcess(translatedText, original));
+                if (memory != null) {
+                    memory.add(processed, translatedText);
+                }
+            }
+            cached.put(name, normalized[i] == null ? CacheFiles.hash(processed) + "|" + translatedText
+                    : normalized[i].toCache(results[i]));
+            if (translationCache != null) {
+                translationCache.put(contentKey(processed, language), translatedText);
+            }
+        }
+    }
+
+    private boolean keepsPlaceholders(String translation, String processed) {
+        return PatternReplacer.countPlaceholders(translation) == PatternReplacer.countPlaceholders(processed);
+    }
+
+    /**
+     * Translate a text whose translation lost some of its placeholders, first
+     * by sending it again on its own, then by translating the text between
+     * the placeholders a fragment at a time, so they can't be lost.
+     *
+     * @return translation, or <code>null</code> if neither worked
+     */
+    private String retranslate(String processed, String language) throws IOException {
+        if (log.isDebugEnabled()) {
+            log.debug("Translation of '" + processed + "' lost some of its placeholders, sending it again");
+        }
+        String translation = translate(Collections.singletonList(processed), sourceLanguage, language).get(0);
+        progress.translated(processed.length());
+        if (keepsPlaceholders(translation, processed)) {
+            return translation;
+        }
+
+        List<String> fragments = PatternReplacer.split(processed);
+        List<String> texts = new ArrayList<String>();
+        for (String fragment : fragments) {
+            if (fragment.trim().length() > 0) {
+                texts.add(fragment.trim());
+            }
+        }
+        if (texts.isEmpty()) {
+            return processed;
+        }
+        Iterator<String> translations = translate(texts, sourceLanguage, language).iterator();
+        progress.translated(processed.length());
+        List<String> translated = new ArrayList<String>();
+        for (String fragment : fragments) {
+            String core = fragment.trim();
+            if (core.length() == 0) {
+                translated.add(fragment);
+            } else {
+                int start = fragment.indexOf(core);
+                translated.add(fragment.substring(0, start) + translations.next()
+                        + fragment.substring(start + core.length()));
+            }
+        }
+        translation = PatternReplacer.join(translated);
+        return keepsPlaceholders(translation, processed) ? translation : null;
+    }
+
+    /**
+     * Look a translation up in the shared cache, if there is one.
+     */
+    private String getShared(String key) {
+        if (translationCache == null) {
+            return null;
+        }
+        String text = translationCache.get(key);
+        if (text == null) {
+            translationCacheMisses.incrementAndGet();
+        } else {
+            translationCacheHits.incrementAndGet();
+        }
+        return text;
+    }
+
+    /**
+     * Key identifying a text and the languages it is translated between,
+     * used by the remote and shared caches.
+     */
+    private String contentKey(String processed, String language) {
+        return CacheFiles.hash(sourceLanguage + "\n" + language + "\n" + processed);
+    }
+
+    /**
+     * Whether near matches from the translation memory are only used until
+     * they can be translated properly. Without a budget every one would be
+     * translated by the very next build, so they are kept as the translation
+     * unless asked otherwise.
+     */
+    private boolean isRetranslatingMemoryMatches() {
+        return retranslateMemoryMatches || maxTranslationTime > 0 || maxCharactersPerBuild > 0;
+    }
+
+    private synchronized TranslationMemory getTranslationMemory(String language) throws IOException {
+        if (memories == null) {
+            return null;
+        }
+        TranslationMemory memory = memories.get(language);
+        if (memory == null) {
+            memory = new TranslationMemory(new File(new File(masterCacheDirectory, ".tm"),
+                    sourceLanguage + "_" + language + ".properties"));
+            memory.load();
+            log.info("Loaded " + memory.size() + " translations from translation memory "
+                    + memory.getFile().getAbsolutePath());
+            memories.put(language, memory);
+        }
+        return memory;
+    }
+
+    List<String> translate(List<String> sources, String sourceLang, String targetLang) throws IOException {
+        return getBackend().translate(sources, sourceLang, targetLang);
+    }
+
+    /**
+     * Get the backend, creating it the first time something actually needs
+     * translating. Runs where everything is cached never load the client
+     * libraries or set up a connection.
+     */
+    private synchronized TranslationBackend getBackend() {
+        if (backend == null) {
+            backend = backendFactory.create(log, apikey);
+            if (hedgePercentile > 0) {
+                backend = new HedgedTranslationBackend(log, backend, hedgePercentile, hedgeMaxRate);
+            }
+        }
+        return backend;
+    }
+
+    /**
+     * Whether the backend only pretends to translate, in which case nothing
+     * it produces is worth caching.
+     */
+    private boolean isFake() {
+        return !backendFactory.isPersistent();
+    }
+
+    private PropertiesWithoutComments loadProperties(File path, String type, boolean isUTF8)
+            throws IOException {
+        PropertiesWithoutComments properties = files == null ? CacheFiles.load(path) : files.load(path);
+        if (cacheSnapshot != null && type.equals("cache")) {
+            String snapshotPath = getSnapshotPath(path);
+            if (snapshotPath != null && cacheSnapshot.contains(snapshotPath)) {
+                PropertiesWithoutComments tiered = cacheSnapshot.load(snapshotPath);
+                tiered.putAll(properties);
+                properties = tiered;
+            }
+        }
+        if (log.isDebugEnabled() && path.exists()) {
+            log.debug("Loading " + type + " file " + path.getAbsolutePath());
+        }
+        if (type.equals("cache") && properties.isEmpty()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Could not find cache file " + path + " so a complete translation will be performed");
+            }
+            progress.uncached();
+        }
+        return properties;
+    }
+
+    /**
+     * Path of a cache file relative to the master cache folder, as used in
+     * snapshots, or <code>null</code> if it is somewhere else.
+     */
+    private String getSnapshotPath(File path) {
+        String root = masterCacheDirectory.getAbsolutePath() + File.separator;
+        String file = path.getAbsolutePath();
+        return file.startsWith(root) ? file.substring(root.length()).replace(File.separatorChar, '/') : null;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * A bundle being translated to one language, as it passes from loading to
+     * translation to being written.
+     */
+    private static class BundleJob {
+        File sourceFile;
+        String dir;
+        String baseName;
+        File destinationDir;
+        File writeCacheFile;
+        String language;
+        PropertiesWithoutComments sourceProperties;
+        PropertiesWithoutComments override;
+        PropertiesWithoutComments cached;
+        Map<Object, Object> loadedCache;
+        PropertiesWithoutComments translated;
+        volatile boolean needCacheWrite;
+        final AtomicInteger pending = new AtomicInteger();
+        final Set<String> deferredSegments = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        List<String> keys;
+        List<String> values;
+        List<String> originals;
+        Map<String, List<Segmenter.Segment>> segmented;
+        int characters;
+        int texts;
+        int cachedTexts;
+        List<Batch> batches;
+    }
+
+    /**
+     * Texts from one bundle to be sent to the backend in one request.
+     */
+    private static class Batch {
+        final BundleJob job;
+        final List<String> keys = new ArrayList<String>();
+        final List<String> values = new ArrayList<String>();
+        final List<String> originals = new ArrayList<String>();
+        final Map<Object, Object> translated = new LinkedHashMap<Object, Object>();
+        final Map<Object, Object> cached = new LinkedHashMap<Object, Object>();
+        int characters;
+        boolean last;
+
+        Batch(BundleJob job) {
+            this.job = job;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.nervepoint.translate;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A store of previous translations for one source / target language pair,
+ * shared by all projects using the same master cache folder. Unlike the
+ * per-bundle caches, this records the source text, so it can be searched for
+ * texts that are similar to a new one. Similarity is the Dice coefficient of
+ * the character trigrams of the two texts.
+ */
+public class TranslationMemory {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * Marks cache entries holding a near match from the memory that is to be
+     * translated properly once there is budget for it, rather than a
+     * translation of the text itself. These are never taken as a valid cache
+     * entry or added to the memory, so the match doesn't become the
+     * translation of the text for good.
+     */
+    public final static String PROVISIONAL = "~";
+
+    private final File file;
+    private final List<String> sources = new ArrayList<String>();
+    private final List<String> targets = new ArrayList<String>();
+    private final List<Integer> sizes = new ArrayList<Integer>();
+    private final Map<String, Integer> exact = new HashMap<String, Integer>();
+    private final Map<String, List<Integer>> index = new HashMap<String, List<Integer>>();
+    private boolean dirty;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public TranslationMemory(File file) {
+        this.file = file;
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    /**
+     * @return cache entry for a match used in place of a translation
+     */
+    public static String toCache(String processed, String target) {
+        return PROVISIONAL + CacheFiles.hash(processed) + "|" + target;
+    }
+
+    /**
+     * @return the match held by a provisional cache entry for this text, or
+     *         <code>null</code> if the entry is not a provisional one, or is
+     *         for a different text
+     */
+    public static String fromCache(String entry, String processed) {
+        int idx = entry.indexOf('|');
+        if (!entry.startsWith(PROVISIONAL) || idx == -1
+                || !entry.substring(PROVISIONAL.length(), idx).equals(CacheFiles.hash(processed))) {
+            return null;
+        }
+        return entry.substring(idx + 1);
+    }
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized int size() {
+        return sources.size();
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    public synchronized void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        PropertiesWithoutComments p = new PropertiesWithoutComments();
+        FileInputStream in = new FileInputStream(file);
+        try {
+            p.load(in);
+        } finally {
+            in.close();
+        }
+        for (String source : p.stringPropertyNames()) {
+            add(source, p.getProperty(source));
+        }
+        dirty = false;
+    }
+
+    public synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        PropertiesWithoutComments p = new PropertiesWithoutComments();
+        for (int i = 0; i < sources.size(); i++) {
+            p.put(sources.get(i), targets.get(i));
+        }
+        // Merged with whatever other builds have added since this was loaded
+        CacheFiles.store(file, Collections.emptyMap(), p, "Translation memory for Google Translate V2 API maven plugin");
+        dirty = false;
+    }
+
+    /**
+     * Record a translation. Both texts should be in their pre-processed form,
+     * i.e. with untranslatable content replaced by placeholders.
+     */
+    public synchronized void add(String source, String target) {
+        Integer id = exact.get(source);
+        if (id != null) {
+            if (!targets.get(id).equals(target)) {
+                targets.set(id, target);
+                dirty = true;
+            }
+            return;
+        }
+
+        id = sources.size();
+        Set<String> trigrams = trigrams(source);
+        sources.add(source);
+        targets.add(target);
+        sizes.add(trigrams.size());
+        exact.put(source, id);
+        for (String t : trigrams) {
+            List<Integer> postings = index.get(t);
+            if (postings == null) {
+                postings = new ArrayList<Integer>(2);
+                index.put(t, postings);
+            }
+            postings.add(id);
+        }
+        dirty = true;
+    }
+
+    /**
+     * Find the most similar previous translation.
+     *
+     * @param source    pre-processed source text
+     * @param threshold minimum similarity, between 0 and 1
+     * @return best match, or null if there is none at or above the threshold
+     */
+    public synchronized Match find(String source, float threshold) {
+        Integer id = exact.get(source);
+        if (id != null) {
+            return new Match(source, targets.get(id), 1);
+        }
+
+        Set<String> trigrams = trigrams(source);
+        int size = trigrams.size();
+        if (size == 0) {
+            return null;
+        }
+
+        /*
+         * Texts whose trigram count is too far from ours can never reach the
+         * threshold, so they are skipped before any counting
+         */
+        float minSize = size * threshold / (2 - threshold);
+        float maxSize = size * (2 - threshold) / threshold;
+
+        Map<Integer, int[]> shared = new HashMap<Integer, int[]>();
+        for (String t : trigrams) {
+            List<Integer> postings = index.get(t);
+            if (postings == null) {
+                continue;
+            }
+            for (Integer candidate : postings) {
+                int candidateSize = sizes.get(candidate);
+                if (candidateSize < minSize || candidateSize > maxSize) {
+                    continue;
+                }
+                int[] count = shared.get(candidate);
+                if (count == null) {
+                    shared.put(candidate, new int[]{1});
+                } else {
+                    count[0]++;
+                }
+            }
+        }
+
+        Match best = null;
+        for (Map.Entry<Integer, int[]> en : shared.entrySet()) {
+            float similarity = 2f * en.getValue()[0] / (size + sizes.get(en.getKey()));
+            if (similarity >= threshold && (best == null || similarity > best.getSimilarity())) {
+                best = new Match(sources.get(en.getKey()), targets.get(en.getKey()), similarity);
+            }
+        }
+        return best;
+    }
+
+    private static Set<String> trigrams(String text) {
+        String padded = "  " + text.toLowerCase() + " ";
+        Set<String> trigrams = new HashSet<String>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    public static class Match {
+        private final String source;
+        private final String target;
+        private final float similarity;
+
+        Match(String source, String target, float similarity) {
+            this.source = source;
+            this.target = target;
+            this.similarity = similarity;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public float getSimilarity() {
+            return similarity;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.nervepoint.translate;
+
+import com.nervepoint.translate.runtime.BinaryBundle;
+import com.nervepoint.translate.runtime.BinaryBundleControl;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.*;
+
+public class BinaryBundleTest extends EngineTestCase {
+
+    public void testRoundTrip() throws Exception {
+        Map<Object, Object> entries = new HashMap<Object, Object>();
+        // "Aa" and "BB" have the same hash code
+        entries.put("Aa", "First");
+        entries.put("BB", "Second");
+        entries.put("caf\u00e9", "Caf\u00e9 cr\u00e8me");
+        entries.put("emoji", "Smile \ud83d\ude00");
+        entries.put("\ud83d\ude00", "Key outside the BMP");
+        entries.put("same1", "Same");
+        entries.put("same2", "Same");
+        entries.put("empty", "");
+        for (int i = 0; i < 500; i++) {
+            entries.put("key" + i, "Value " + i);
+        }
+        File file = new File(target, "messages_fr.tbundle");
+        BinaryBundleWriter.write(file, entries);
+
+        BinaryBundle bundle = new BinaryBundle(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            assertEquals(entry.getValue(), bundle.getString((String) entry.getKey()));
+        }
+        assertEquals(entries.keySet(), new HashSet<Object>(Collections.list(bundle.getKeys())));
+        assertFalse(bundle.containsKey("Ab"));
+        assertFalse(bundle.containsKey("caf"));
+        assertFalse(bundle.containsKey("key"));
+    }
+
+    public void testNotABundle() throws Exception {
+        try {
+            new BinaryBundle(ByteBuffer.wrap("hello=Hello\n".getBytes("ISO-8859-1")));
+            fail("Expected a bad magic number to be refused");
+        } catch (IllegalArgumentException iae) {
+            // Expected
+        }
+    }
+
+    public void testEmptyBundle() throws Exception {
+        File file = new File(target, "messages_fr.tbundle");
+        BinaryBundleWriter.write(file, new HashMap<Object, Object>());
+        BinaryBundle bundle = new BinaryBundle(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+        assertFalse(bundle.containsKey("anything"));
+        assertFalse(bundle.getKeys().hasMoreElements());
+    }
+
+    public void testWrittenByEngineAndLoadedByControl() throws Exception {
+        write(new File(source, "com/acme/messages_en.properties"), "hello", "Hello", "bye", "Goodbye");
+        TranslationEngine engine = newEngine();
+        engine.setBundleFormat("binary");
+        engine.run();
+        assertTrue(new File(target, "com/acme/messages_fr.tbundle").exists());
+        assertFalse(new File(target, "com/acme/messages_fr.properties").exists());
+
+        // The default bundle is found as a properties file beside it
+        write(new File(target, "com/acme/messages.properties"), "hello", "Hello", "only", "Default");
+        URLClassLoader loader = new URLClassLoader(new URL[]{target.toURI().toURL()}, null);
+        try {
+            ResourceBundle bundle = ResourceBundle.getBundle("com.acme.messages", Locale.FRENCH, loader,
+                    BinaryBundleControl.getInstance());
+            assertTrue(bundle instanceof BinaryBundle);
+            assertEquals("fr:Hello", bundle.getString("hello"));
+            assertEquals("fr:Goodbye", bundle.getString("bye"));
+            assertEquals("Default", bundle.getString("only"));
+            assertEquals(new HashSet<String>(Arrays.asList("hello", "bye", "only")),
+                    new HashSet<String>(Collections.list(bundle.getKeys())));
+        } finally {
+            ResourceBundle.clearCache(loader);
+        }
+    }
+
+    public void testMappedFile() throws Exception {
+        Map<Object, Object> entries = new HashMap<Object, Object>();
+        entries.put("hello", "Bonjour");
+        File file = new File(target, "messages_fr.tbundle");
+        BinaryBundleWriter.write(file, entries);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        BinaryBundle bundle;
+        try {
+            bundle = new BinaryBundle(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+        } finally {
+            raf.close();
+        }
+        assertEquals("Bonjour", bundle.getString("hello"));
+    }
+}
@@ -0,0 +1,107 @@
+package com.nervepoint.translate;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+
+public class BundleClassWriterTest extends EngineTestCase {
+
+    public void testCompiledBundle() throws Exception {
+        Map<Object, Object> entries = new HashMap<Object, Object>();
+        entries.put("quote", "Say \"hello\"");
+        entries.put("backslash", "C:\\temp\\");
+        entries.put("lines", "One\nTwo\r\nThree\tTabbed");
+        entries.put("control", "Bell\u0007");
+        entries.put("unicode", "Caf\u00e9 \ud83d\ude00");
+        entries.put("escapeLike", "Not an escape \\u0022");
+        entries.put("comment", "*/ not a comment end");
+        entries.put("Aa", "Same hash");
+        entries.put("BB", "as this one");
+        for (int i = 0; i < 1200; i++) {
+            entries.put("key" + i, "Value " + i);
+        }
+        File generated = new File(root, "generated");
+        File file = BundleClassWriter.write(generated, "com/acme", "messages_fr", entries);
+        assertEquals(new File(generated, "com/acme/messages_fr.java"), file);
+
+        ClassLoader loader = compile(generated, file);
+        if (loader == null) {
+            return;
+        }
+        ResourceBundle bundle = ResourceBundle.getBundle("com.acme.messages", Locale.FRENCH, loader);
+        assertEquals("com.acme.messages_fr", bundle.getClass().getName());
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            assertEquals(entry.getValue(), bundle.getString((String) entry.getKey()));
+        }
+        assertEquals(entries.keySet(), new HashSet<Object>(Collections.list(bundle.getKeys())));
+        assertFalse(bundle.containsKey("missing"));
+    }
+
+    public void testDefaultPackage() throws Exception {
+        Map<Object, Object> entries = new HashMap<Object, Object>();
+        entries.put("hello", "Bonjour");
+        File generated = new File(root, "generated");
+        File file = BundleClassWriter.write(generated, "", "messages_fr", entries);
+        assertEquals(new File(generated, "messages_fr.java"), file);
+
+        ClassLoader loader = compile(generated, file);
+        if (loader != null) {
+            assertEquals("Bonjour", ResourceBundle.getBundle("messages", Locale.FRENCH, loader).getString("hello"));
+        }
+    }
+
+    public void testNotAClass() throws Exception {
+        Map<Object, Object> entries = new HashMap<Object, Object>();
+        entries.put("hello", "Bonjour");
+        File generated = new File(root, "generated");
+        assertNull(BundleClassWriter.write(generated, "", "messages-fr", entries));
+        assertNull(BundleClassWriter.write(generated, "com/acme-corp", "messages_fr", entries));
+        assertNull(BundleClassWriter.write(generated, "com/class", "messages_fr", entries));
+
+        char[] longValue = new char[70000];
+        Arrays.fill(longValue, 'x');
+        entries.put("long", new String(longValue));
+        assertNull(BundleClassWriter.write(generated, "", "messages_fr", entries));
+    }
+
+    public void testWrittenByEngine() throws Exception {
+        write(new File(source, "com/acme/messages_en.properties"), "hello", "Hello");
+        write(new File(source, "com/acme/bad-name_en.properties"), "hello", "Hello");
+        File generated = new File(root, "generated");
+        TranslationEngine engine = newEngine();
+        engine.setBundleFormat("class");
+        engine.setGeneratedSourceDirectory(generated);
+        engine.run();
+
+        assertTrue(new File(generated, "com/acme/messages_fr.java").exists());
+        assertFalse(new File(target, "com/acme/messages_fr.properties").exists());
+        // Falls back to properties when it cannot be a class
+        assertEquals("fr:Hello", load(new File(target, "com/acme/bad-name_fr.properties")).getProperty("hello"));
+    }
+
+    public void testLiteral() {
+        assertEquals("\"a\\\"b\\\\c\\n\\r\\t\\007\\u00e9\"", BundleClassWriter.literal("a\"b\\c\n\r\t\u0007\u00e9"));
+    }
+
+    /**
+     * Compile generated source and give a class loader for it, or
+     * <code>null</code> if there is no compiler (running on a JRE).
+     */
+    private ClassLoader compile(File generated, File file) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            return null;
+        }
+        File classes = new File(root, "classes");
+        classes.mkdirs();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        int status = compiler.run(null, null, errors, "-d", classes.getPath(), "-sourcepath", generated.getPath(),
+                file.getPath());
+        assertEquals(errors.toString(), 0, status);
+        return new URLClassLoader(new URL[]{classes.toURI().toURL()}, null);
+    }
+}
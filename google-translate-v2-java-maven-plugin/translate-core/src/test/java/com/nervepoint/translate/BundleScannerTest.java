@@ -0,0 +1,117 @@
+package com.nervepoint.translate;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class BundleScannerTest extends EngineTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        for (String path : new String[]{"messages_en.properties", "messages_fr.properties", "readme.txt",
+                "com/acme/app_en.properties", "com/acme/web/page_en.properties", "com/acme/test/fixture_en.properties",
+                "skip/skipped_en.properties", "other/deep/er/thing_en.properties"}) {
+            write(new File(source, path), "a", "b");
+        }
+        // Old enough for the listings to be trusted
+        age(source);
+    }
+
+    public void testPatterns() throws Exception {
+        BundleScanner scanner = new BundleScanner(new String[]{"**/*_en.properties"},
+                new String[]{"**/test/**", "skip/"});
+        assertEquals(Arrays.asList(sep("com/acme/app_en.properties"), sep("com/acme/web/page_en.properties"),
+                        "messages_en.properties", sep("other/deep/er/thing_en.properties")),
+                Arrays.asList(scanner.scan(source)));
+        // The excluded folders are never listed
+        assertEquals(7, scanner.getListed());
+
+        scanner = new BundleScanner(new String[]{"com/*/*_en.properties", "*_fr.properties"}, null);
+        assertEquals(Arrays.asList(sep("com/acme/app_en.properties"), "messages_fr.properties"),
+                Arrays.asList(scanner.scan(source)));
+        // Only the root, com and com/acme could hold a match
+        assertEquals(3, scanner.getListed());
+    }
+
+    public void testParallelScanFindsTheSame() throws Exception {
+        String[] sequential = new BundleScanner(new String[]{"**/*.properties"}, null).scan(source);
+        BundleScanner scanner = new BundleScanner(new String[]{"**/*.properties"}, null);
+        scanner.setParallelism(4);
+        assertEquals(Arrays.asList(sequential), Arrays.asList(scanner.scan(source)));
+        assertEquals(7, sequential.length);
+    }
+
+    public void testIndexIsReused() throws Exception {
+        File indexFile = new File(root, "scan.index");
+        BundleScanner scanner = new BundleScanner(new String[]{"**/*_en.properties"}, null);
+        scanner.setIndexFile(indexFile);
+        String[] first = scanner.scan(source);
+        assertEquals(9, scanner.getListed());
+        assertEquals(9, indexSize(indexFile));
+
+        // Nothing changed, so nothing is listed again
+        assertEquals(Arrays.asList(first), Arrays.asList(scanner.scan(source)));
+        assertEquals(0, scanner.getListed());
+        assertEquals(9, scanner.getReused());
+
+        // Nor by a later build using the saved index
+        scanner = new BundleScanner(new String[]{"**/*_en.properties"}, null);
+        scanner.setIndexFile(indexFile);
+        assertEquals(Arrays.asList(first), Arrays.asList(scanner.scan(source)));
+        assertEquals(0, scanner.getListed());
+
+        // A new file changes its folder, which is listed again
+        write(new File(source, "com/acme/added_en.properties"), "a", "b");
+        assertTrue(Arrays.asList(scanner.scan(source)).contains(sep("com/acme/added_en.properties")));
+        assertEquals(1, scanner.getListed());
+    }
+
+    public void testRemovedFoldersArePruned() throws Exception {
+        File indexFile = new File(root, "scan.index");
+        BundleScanner scanner = new BundleScanner(new String[]{"**/*_en.properties"}, null);
+        scanner.setIndexFile(indexFile);
+        scanner.scan(source);
+        assertEquals(9, indexSize(indexFile));
+
+        delete(new File(source, "other"));
+        assertFalse(Arrays.asList(scanner.scan(source)).contains(sep("other/deep/er/thing_en.properties")));
+        assertEquals(6, indexSize(indexFile));
+
+        // Folders no longer wanted are dropped too
+        scanner = new BundleScanner(new String[]{"com/**/*_en.properties"}, null);
+        scanner.setIndexFile(indexFile);
+        scanner.scan(source);
+        assertEquals(5, indexSize(indexFile));
+    }
+
+    private static String sep(String path) {
+        return path.replace('/', File.separatorChar);
+    }
+
+    private static void age(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                age(f);
+            }
+        }
+        file.setLastModified(System.currentTimeMillis() - 60000);
+    }
+
+    /**
+     * Number of folders in a saved index.
+     */
+    private static int indexSize(File indexFile) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(indexFile));
+        try {
+            assertEquals(BundleScanner.MAGIC, in.readInt());
+            assertEquals(BundleScanner.VERSION, in.readInt());
+            return in.readInt();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class BundleWatcherTest extends EngineTestCase {
+
+    private final static Set<String> FULL_RUN = Collections.singleton("<full run>");
+
+    private BundleWatcher watcher;
+    private Thread thread;
+    private final BlockingQueue<Set<String>> runs = new LinkedBlockingQueue<Set<String>>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        write(new File(source, "messages_en.properties"), "a", "First text");
+        write(new File(source, "other_en.properties"), "b", "Other text");
+        newEngine().run();
+        backend.reset();
+
+        final TranslationEngine engine = newEngine();
+        engine.setBundleCache(new BundleCache());
+        final BundleWatcher.Listener listener = new BundleWatcher.Listener() {
+            public void changed(Set<String> files) throws IOException {
+                if (files == null) {
+                    engine.run();
+                    runs.add(FULL_RUN);
+                } else {
+                    engine.run(files);
+                    runs.add(new TreeSet<String>(files));
+                }
+            }
+        };
+        StartedLog started = new StartedLog();
+        watcher = new BundleWatcher(started, source);
+        thread = new Thread() {
+            public void run() {
+                try {
+                    watcher.watch(listener);
+                } catch (IOException ioe) {
+                    runs.add(Collections.singleton(ioe.toString()));
+                }
+            }
+        };
+        thread.start();
+        started.await();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        watcher.close();
+        thread.join(5000);
+        super.tearDown();
+    }
+
+    public void testOnlyTheChangedBundleIsTranslated() throws Exception {
+        File other = new File(target, "other_fr.properties");
+        assertTrue(other.delete());
+
+        write(new File(source, "messages_en.properties"), "a", "First text", "c", "New text");
+        assertEquals(Collections.singleton("messages_en.properties"), runs.poll(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("New text"), backend.getTexts());
+        assertEquals("fr:New text", load(new File(target, "messages_fr.properties")).getProperty("c"));
+        // The other bundle was not looked at
+        assertFalse(other.exists());
+    }
+
+    public void testNewDirectoryTranslatesEverything() throws Exception {
+        File other = new File(target, "other_fr.properties");
+        assertTrue(other.delete());
+
+        write(new File(source, "com/acme/added_en.properties"), "d", "Added text");
+        assertEquals(FULL_RUN, runs.poll(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("Added text"), backend.getTexts());
+        assertEquals("fr:Added text", load(new File(target, "com/acme/added_fr.properties")).getProperty("d"));
+        assertEquals("fr:Other text", load(other).getProperty("b"));
+
+        // and files in it are watched from then on
+        write(new File(source, "com/acme/added_en.properties"), "d", "Changed text");
+        assertEquals(Collections.singleton("com/acme/added_en.properties"), runs.poll(10, TimeUnit.SECONDS));
+        assertEquals("fr:Changed text", load(new File(target, "com/acme/added_fr.properties")).getProperty("d"));
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * Lets the test wait until the watcher has registered its folders.
+     */
+    private static class StartedLog extends QuietLog {
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        public void info(String message) {
+            if (message.startsWith("Watching ")) {
+                latch.countDown();
+            }
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+    }
+}
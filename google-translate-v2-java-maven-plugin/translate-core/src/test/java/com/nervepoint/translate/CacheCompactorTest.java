@@ -0,0 +1,143 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class CacheCompactorTest extends EngineTestCase {
+
+    public void testRemovesDeadKeys() throws Exception {
+        PropertiesWithoutComments sourceProperties = new PropertiesWithoutComments();
+        sourceProperties.put("kept", "Kept");
+
+        PropertiesWithoutComments cached = new PropertiesWithoutComments();
+        cached.put("kept", "x|y");
+        cached.put("removed", "x|y");
+        cached.put(Segmenter.segmentKey("removed", "abc"), "x|y");
+        cached.put(Segmenter.segmentKey("kept", "abc"), "x|y");
+
+        CacheCompactor compactor = new CacheCompactor(new QuietLog(), null);
+        Set<String> live = compactor.getLiveKeys(new File(source, "messages_en.properties"), sourceProperties);
+        assertEquals(2, compactor.compact(cached, live));
+        assertTrue(cached.containsKey("kept"));
+        // Without a segmenter, sentences are kept while their key is live
+        assertTrue(cached.containsKey(Segmenter.segmentKey("kept", "abc")));
+    }
+
+    public void testRemovesOldSentences() throws Exception {
+        PropertiesWithoutComments sourceProperties = new PropertiesWithoutComments();
+        sourceProperties.put("help", "First sentence. Second sentence, now edited.");
+
+        PropertiesWithoutComments cached = new PropertiesWithoutComments();
+        String first = Segmenter.segmentKey("help", CacheFiles.hash("First sentence."));
+        String edited = Segmenter.segmentKey("help", CacheFiles.hash("Second sentence, now edited."));
+        String old = Segmenter.segmentKey("help", CacheFiles.hash("Second sentence."));
+        cached.put("help", "x|y");
+        cached.put(first, "x|y");
+        cached.put(edited, "x|y");
+        cached.put(old, "x|y");
+
+        CacheCompactor compactor = new CacheCompactor(new QuietLog(), Collections.<String>emptyList());
+        compactor.setSegmenter(new Segmenter("en"), new PatternReplacer());
+        Set<String> live = compactor.getLiveKeys(new File(source, "messages_en.properties"), sourceProperties);
+        assertEquals(1, compactor.compact(cached, live));
+        assertTrue(cached.containsKey("help"));
+        assertTrue(cached.containsKey(first));
+        assertTrue(cached.containsKey(edited));
+        assertFalse(cached.containsKey(old));
+    }
+
+    public void testCompactDuringRun() throws Exception {
+        File bundle = new File(source, "help_en.properties");
+        write(bundle, "help", "The first sentence is here. The second one follows.", "gone", "Removed soon");
+        TranslationEngine engine = newEngine();
+        engine.setSegmentThreshold(20);
+        engine.run();
+        File cacheFile = new File(cache, "help_fr.properties");
+        assertEquals(4, CacheFiles.load(cacheFile).size());
+
+        write(bundle, "help", "The first sentence is here. The second one is new.");
+        engine = newEngine();
+        engine.setSegmentThreshold(20);
+        engine.setCompactCache(true);
+        engine.run();
+
+        PropertiesWithoutComments cached = CacheFiles.load(cacheFile);
+        assertEquals(3, cached.size());
+        assertTrue(cached.containsKey("help"));
+        assertTrue(cached.containsKey(Segmenter.segmentKey("help", CacheFiles.hash("The first sentence is here."))));
+        assertTrue(cached.containsKey(Segmenter.segmentKey("help", CacheFiles.hash("The second one is new."))));
+    }
+
+    public void testKeepRefs() throws Exception {
+        File bundle = new File(source, "messages_en.properties");
+        write(bundle, "old", "Old text", "kept", "Kept");
+        git("init", "-q");
+        git("add", ".");
+        git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "Old");
+        git("tag", "old");
+
+        PropertiesWithoutComments sourceProperties = new PropertiesWithoutComments();
+        sourceProperties.put("kept", "Kept");
+        CacheCompactor compactor = new CacheCompactor(new QuietLog(), Collections.singletonList("old"));
+        Set<String> live = compactor.getLiveKeys(bundle, sourceProperties);
+        assertTrue(live.contains("old"));
+
+        // Bundles that are not in the ref, tracked or not, just have no keys from it
+        File added = new File(source, "added_en.properties");
+        write(added, "new", "New");
+        assertEquals(Collections.singleton("new"), compactor.getLiveKeys(added, load(added)));
+        git("add", ".");
+        assertEquals(Collections.singleton("new"), compactor.getLiveKeys(added, load(added)));
+
+        // A ref that does not resolve stops compaction, rather than losing entries
+        compactor = new CacheCompactor(new QuietLog(), Arrays.asList("old", "mistyped"));
+        try {
+            compactor.getLiveKeys(bundle, sourceProperties);
+            fail("Expected an unknown ref to fail");
+        } catch (IOException ioe) {
+            assertTrue(ioe.getMessage(), ioe.getMessage().contains("mistyped"));
+        }
+    }
+
+    public void testFindSourceFile() throws Exception {
+        write(new File(source, "messages_en.properties"), "a", "b");
+        write(new File(source, "com/acme/plain.properties"), "a", "b");
+        write(new File(source, "my_app_en.properties"), "a", "b");
+        List<String> languages = Arrays.asList("fr", "pt_BR");
+
+        assertEquals(new File(source, "messages_en.properties"),
+                CacheCompactor.findSourceFile(source, "messages_fr.properties", "en", languages));
+        assertEquals(new File(source, "messages_en.properties"),
+                CacheCompactor.findSourceFile(source, "messages_pt_BR.properties", "en", languages));
+        assertEquals(new File(source, "com/acme/plain.properties"),
+                CacheCompactor.findSourceFile(source, "com/acme/plain_fr.properties", "en", languages));
+        assertEquals(new File(source, "my_app_en.properties"),
+                CacheCompactor.findSourceFile(source, "my_app_fr.properties", "en", languages));
+        // A language no longer translated to still finds an existing source
+        assertEquals(new File(source, "messages_en.properties"),
+                CacheCompactor.findSourceFile(source, "messages_de.properties", "en", languages));
+
+        // A removed bundle is only known to be removed for a configured language
+        assertEquals(new File(source, "gone.properties"),
+                CacheCompactor.findSourceFile(source, "gone_fr.properties", "en", languages));
+        assertNull(CacheCompactor.findSourceFile(source, "gone_de.properties", "en", languages));
+
+        // as is a cache file that could belong to more than one bundle
+        write(new File(source, "my_en.properties"), "a", "b");
+        assertNull(CacheCompactor.findSourceFile(source, "my_app_fr.properties", "en", languages));
+    }
+
+    private void git(String... args) throws Exception {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        Process process = new ProcessBuilder(command).directory(root).redirectErrorStream(true).start();
+        process.getOutputStream().close();
+        process.getInputStream().close();
+        assertEquals(0, process.waitFor());
+    }
+}
@@ -0,0 +1,120 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CacheFilesTest extends EngineTestCase {
+
+    /**
+     * Stores entries one at a time in a cache file, as a separate build would.
+     *
+     * @param args cache file, prefix for the keys, number of entries
+     */
+    public static void main(String[] args) throws Exception {
+        storeEntries(new File(args[0]), args[1], Integer.parseInt(args[2]));
+    }
+
+    private static void storeEntries(File file, String prefix, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            PropertiesWithoutComments cached = CacheFiles.load(file);
+            Map<Object, Object> loaded = CacheFiles.snapshot(cached);
+            cached.put(prefix + i, CacheFiles.hash(prefix + i) + "|" + prefix + i);
+            CacheFiles.store(file, loaded, cached, null);
+        }
+    }
+
+    public void testOnlyChangesAreApplied() throws Exception {
+        File file = new File(cache, "messages_fr.properties");
+        PropertiesWithoutComments initial = new PropertiesWithoutComments();
+        initial.put("kept", "1");
+        initial.put("removed", "1");
+        initial.put("changedElsewhere", "1");
+        CacheFiles.store(file, new HashMap<Object, Object>(), initial, null);
+
+        // Two builds load the same file
+        PropertiesWithoutComments first = CacheFiles.load(file);
+        Map<Object, Object> firstLoaded = CacheFiles.snapshot(first);
+        PropertiesWithoutComments second = CacheFiles.load(file);
+        Map<Object, Object> secondLoaded = CacheFiles.snapshot(second);
+
+        first.put("added", "1");
+        first.put("changedElsewhere", "2");
+        CacheFiles.store(file, firstLoaded, first, null);
+
+        second.put("alsoAdded", "1");
+        second.remove("removed");
+        CacheFiles.store(file, secondLoaded, second, null);
+
+        PropertiesWithoutComments merged = CacheFiles.load(file);
+        assertEquals("1", merged.getProperty("kept"));
+        assertEquals("1", merged.getProperty("added"));
+        assertEquals("1", merged.getProperty("alsoAdded"));
+        // The second build didn't change it, so the first build's change stays
+        assertEquals("2", merged.getProperty("changedElsewhere"));
+        assertFalse(merged.containsKey("removed"));
+
+        // Only the cache file and its lock are left behind
+        assertEquals(new HashSet<String>(Arrays.asList("messages_fr.properties", ".messages_fr.properties.lock")),
+                new HashSet<String>(Arrays.asList(cache.list())));
+    }
+
+    public void testEmptyCacheIsDeleted() throws Exception {
+        File file = new File(cache, "messages_fr.properties");
+        PropertiesWithoutComments cached = new PropertiesWithoutComments();
+        cached.put("a", "1");
+        CacheFiles.store(file, new HashMap<Object, Object>(), cached, null);
+        assertTrue(file.exists());
+
+        Map<Object, Object> loaded = CacheFiles.snapshot(cached);
+        cached.clear();
+        CacheFiles.store(file, loaded, cached, null);
+        assertFalse(file.exists());
+    }
+
+    public void testConcurrentThreads() throws Exception {
+        final File file = new File(cache, "messages_fr.properties");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (int t = 0; t < 8; t++) {
+                final String prefix = "thread" + t + ".";
+                futures.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        storeEntries(file, prefix, 25);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(8 * 25, CacheFiles.load(file).size());
+    }
+
+    public void testConcurrentProcesses() throws Exception {
+        File file = new File(cache, "messages_fr.properties");
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        List<Process> processes = new ArrayList<Process>();
+        for (int p = 0; p < 3; p++) {
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    CacheFilesTest.class.getName(), file.getPath(), "process" + p + ".", "20")
+                    .redirectErrorStream(true).start());
+        }
+        storeEntries(file, "here.", 20);
+        for (Process process : processes) {
+            process.getOutputStream().close();
+            while (process.getInputStream().read() != -1) {
+                // Discard
+            }
+            assertEquals(0, process.waitFor());
+        }
+        assertEquals(4 * 20, CacheFiles.load(file).size());
+    }
+}
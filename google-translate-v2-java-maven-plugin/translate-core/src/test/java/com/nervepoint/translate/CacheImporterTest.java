@@ -0,0 +1,116 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class CacheImporterTest extends EngineTestCase {
+
+    public void testImportedTranslationsAreNotTranslatedAgain() throws Exception {
+        File sourceFile = new File(source, "com/acme/messages_en.properties");
+        write(sourceFile, "hello", "Hello ${name}", "bye", "Goodbye", "same", "Same", "lost", "Lost ${value}",
+                "missing", "Not translated yet");
+        File legacy = new File(root, "legacy/com/acme/messages_fr.properties");
+        writeUtf8(legacy, "hello=Bonjour ${name}\nbye=Au revoir\nsame=Same\nlost=Perdu\nobsolete=Vieux\n");
+
+        PatternReplacer replacer = new PatternReplacer();
+        replacer.addPattern("\\$\\{\\w*\\}");
+        CacheImporter importer = new CacheImporter(new QuietLog(), replacer);
+        importer.add(sourceFile, legacy, new File(cache, "com/acme/messages_fr.properties"));
+        importer.run(2);
+        assertEquals(2, importer.getImported());
+        assertEquals(1, importer.getUntranslated());
+        assertEquals(1, importer.getMismatched());
+
+        TranslationEngine engine = newEngine();
+        engine.setReplacer(replacer);
+        engine.run();
+        assertEquals(new HashSet<String>(Arrays.asList("Same", "Lost _999_", "Not translated yet")),
+                new HashSet<String>(backend.getTexts()));
+        PropertiesWithoutComments out = load(new File(target, "com/acme/messages_fr.properties"));
+        assertEquals("Bonjour ${name}", out.getProperty("hello"));
+        assertEquals("Au revoir", out.getProperty("bye"));
+        assertEquals("fr:Lost ${value}", out.getProperty("lost"));
+        assertNull(out.getProperty("obsolete"));
+    }
+
+    public void testValidEntriesAreKept() throws Exception {
+        File sourceFile = new File(source, "messages_en.properties");
+        write(sourceFile, "bye", "Goodbye");
+        TranslationEngine engine = newEngine();
+        engine.run();
+
+        File legacy = new File(root, "legacy/messages_fr.properties");
+        writeUtf8(legacy, "bye=Au revoir\n");
+        File cacheFile = new File(cache, "messages_fr.properties");
+        CacheImporter importer = new CacheImporter(new QuietLog(), new PatternReplacer());
+        assertEquals(0, importer.importBundle(sourceFile, legacy, cacheFile));
+        assertEquals(1, importer.getKept());
+
+        importer.setOverwrite(true);
+        assertEquals(1, importer.importBundle(sourceFile, legacy, cacheFile));
+        assertEquals("Au revoir", TextNormalizer.fromCache(CacheFiles.load(cacheFile).getProperty("bye"), "Goodbye", false));
+    }
+
+    public void testReorderedPlaceholdersAreNotImported() throws Exception {
+        File sourceFile = new File(source, "messages_en.properties");
+        write(sourceFile, "page", "{0} of {1}", "same", "{0} and {1}");
+        File legacy = new File(root, "legacy/messages_de.properties");
+        writeUtf8(legacy, "page={1} von {0}\nsame={0} und {1}\n");
+
+        PatternReplacer replacer = new PatternReplacer();
+        replacer.addPattern("\\{\\d+\\}");
+        CacheImporter importer = new CacheImporter(new QuietLog(), replacer);
+        File cacheFile = new File(cache, "messages_de.properties");
+        assertEquals(1, importer.importBundle(sourceFile, legacy, cacheFile));
+        assertEquals(1, importer.getMismatched());
+        PropertiesWithoutComments cached = CacheFiles.load(cacheFile);
+        assertNull(cached.getProperty("page"));
+        assertEquals("_999_ und _999_",
+                TextNormalizer.fromCache(cached.getProperty("same"), "_999_ and _999_", false));
+    }
+
+    public void testEncodings() throws Exception {
+        File sourceFile = new File(source, "messages_en.properties");
+        write(sourceFile, "yes", "Yes", "no", "No");
+        File cacheFile = new File(cache, "messages_x.properties");
+
+        // Standard bundles, escaped or with ISO-8859-1 characters
+        File legacy = new File(root, "legacy/messages_x.properties");
+        writeLatin1(legacy, "yes=\\u662f\nno=N\u00e9\n");
+        CacheImporter importer = new CacheImporter(new QuietLog(), new PatternReplacer());
+        assertEquals(2, importer.importBundle(sourceFile, legacy, cacheFile));
+        PropertiesWithoutComments cached = CacheFiles.load(cacheFile);
+        assertEquals("\u662f", TextNormalizer.fromCache(cached.getProperty("yes"), "Yes", false));
+        assertEquals("N\u00e9", TextNormalizer.fromCache(cached.getProperty("no"), "No", false));
+
+        // and UTF-8 ones
+        writeUtf8(legacy, "yes=\u662f\u7684\nno=N\u00e9e\n");
+        importer.setOverwrite(true);
+        assertEquals(2, importer.importBundle(sourceFile, legacy, cacheFile));
+        cached = CacheFiles.load(cacheFile);
+        assertEquals("\u662f\u7684", TextNormalizer.fromCache(cached.getProperty("yes"), "Yes", false));
+        assertEquals("N\u00e9e", TextNormalizer.fromCache(cached.getProperty("no"), "No", false));
+    }
+
+    private static void writeLatin1(File file, String content) throws Exception {
+        writeText(file, content, "ISO-8859-1");
+    }
+
+    private static void writeUtf8(File file, String content) throws Exception {
+        writeText(file, content, "UTF-8");
+    }
+
+    private static void writeText(File file, String content, String encoding) throws Exception {
+        file.getParentFile().mkdirs();
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), encoding);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+}
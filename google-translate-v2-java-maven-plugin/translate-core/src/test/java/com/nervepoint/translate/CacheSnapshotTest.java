@@ -0,0 +1,199 @@
+package com.nervepoint.translate;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class CacheSnapshotTest extends EngineTestCase {
+
+    public void testExportAndRestore() throws Exception {
+        write(new File(cache, "messages_fr.properties"), "a", "x|Un");
+        write(new File(cache, "com/acme/messages_de.properties"), "a", "x|Ein");
+        write(new File(cache, ".tm/en_fr.properties"), "One", "Un");
+        new File(cache, ".messages_fr.properties.lock").createNewFile();
+        File snapshot = new File(root, "snapshot.gz");
+        assertEquals(3, CacheSnapshot.export(cache, snapshot));
+
+        File restored = new File(root, "restored");
+        write(new File(restored, "other_fr.properties"), "kept", "x|y");
+        write(new File(restored, "messages_fr.properties"), "a", "x|Old");
+        assertEquals(3, CacheSnapshot.restore(snapshot, restored, 2));
+        for (String path : new String[]{"messages_fr.properties", "com/acme/messages_de.properties", ".tm/en_fr.properties"}) {
+            assertTrue(path, Arrays.equals(Files.readAllBytes(new File(cache, path).toPath()),
+                    Files.readAllBytes(new File(restored, path).toPath())));
+        }
+        // Files not in the snapshot are left alone
+        assertEquals("x|y", CacheFiles.load(new File(restored, "other_fr.properties")).getProperty("kept"));
+        assertEquals(Arrays.asList(), temporaryFiles(restored));
+    }
+
+    public void testCorruptSnapshotRestoresNothing() throws Exception {
+        write(new File(cache, "messages_fr.properties"), "a", "x|Un");
+        write(new File(cache, "messages_de.properties"), "a", "x|Ein");
+        File snapshot = new File(root, "snapshot.gz");
+        CacheSnapshot.export(cache, snapshot);
+
+        byte[] content = gunzip(snapshot);
+        int pos = indexOf(content, "x|Ein".getBytes("ISO-8859-1"));
+        content[pos + 2] = 'A';
+        gzip(content, snapshot);
+        assertRestoreFails(snapshot, "checksum");
+    }
+
+    public void testTruncatedSnapshotRestoresNothing() throws Exception {
+        write(new File(cache, "messages_fr.properties"), "a", "x|Un");
+        File snapshot = new File(root, "snapshot.gz");
+        CacheSnapshot.export(cache, snapshot);
+
+        byte[] content = gunzip(snapshot);
+        gzip(Arrays.copyOf(content, content.length - 10), snapshot);
+        assertRestoreFails(snapshot, "truncated");
+    }
+
+    public void testPathsOutsideTheCacheAreRefused() throws Exception {
+        File snapshot = new File(root, "snapshot.gz");
+        for (String path : new String[]{"../evil.properties", "a/../../evil.properties", "/tmp/evil.properties",
+                "a\\..\\..\\evil.properties", "C:evil.properties", "C:\\evil.properties"}) {
+            writeSnapshot(snapshot, path);
+            assertRestoreFails(snapshot, "outside the cache folder");
+            assertFalse(new File(root, "evil.properties").exists());
+        }
+
+        // Nor may a path lead out through a link in the cache folder
+        File outside = new File(root, "outside");
+        outside.mkdirs();
+        File restored = new File(root, "restored");
+        restored.mkdirs();
+        Files.createSymbolicLink(new File(restored, "link").toPath(), outside.toPath());
+        writeSnapshot(snapshot, "link/evil.properties");
+        try {
+            CacheSnapshot.restore(snapshot, restored, 2);
+            fail("Expected the snapshot to be refused");
+        } catch (IOException ioe) {
+            assertTrue(ioe.getMessage(), ioe.getMessage().contains("outside the cache folder"));
+        }
+        assertEquals(0, outside.list().length);
+    }
+
+    public void testRestoreTakesTheCacheLock() throws Exception {
+        write(new File(cache, "messages_fr.properties"), "a", "x|Un");
+        File snapshot = new File(root, "snapshot.gz");
+        CacheSnapshot.export(cache, snapshot);
+        File restored = new File(root, "restored");
+        CacheSnapshot.restore(snapshot, restored, 1);
+        assertTrue(new File(restored, ".messages_fr.properties.lock").exists());
+    }
+
+    public void testSnapshotAsCacheTier() throws Exception {
+        write(new File(source, "messages_en.properties"), "a", "First text", "b", "Second text");
+        newEngine().run();
+        File snapshot = new File(root, "snapshot.gz");
+        CacheSnapshot.export(cache, snapshot);
+        CacheSnapshot loaded = CacheSnapshot.load(snapshot);
+        assertTrue(loaded.contains("messages_fr.properties"));
+        assertEquals(2, loaded.load("messages_fr.properties").size());
+        assertEquals(0, loaded.load("missing_fr.properties").size());
+
+        // A build with an empty cache folder reads from the snapshot
+        delete(cache);
+        backend.reset();
+        TranslationEngine engine = newEngine();
+        engine.setCacheSnapshot(snapshot);
+        engine.run();
+        assertEquals(0, backend.getRequests());
+        assertEquals("fr:Second text", load(new File(target, "messages_fr.properties")).getProperty("b"));
+    }
+
+    private static void writeSnapshot(File snapshot, String path) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        DataOutputStream out = new DataOutputStream(new DigestOutputStream(bytes, digest));
+        out.writeInt(CacheSnapshot.MAGIC);
+        out.writeInt(CacheSnapshot.VERSION);
+        out.writeBoolean(true);
+        out.writeUTF(path);
+        out.writeInt(1);
+        out.write('x');
+        out.writeBoolean(false);
+        out.flush();
+        bytes.write(digest.digest());
+        gzip(bytes.toByteArray(), snapshot);
+    }
+
+    private void assertRestoreFails(File snapshot, String message) throws Exception {
+        File restored = new File(root, "restored");
+        try {
+            CacheSnapshot.restore(snapshot, restored, 2);
+            fail("Expected the snapshot to be refused");
+        } catch (IOException ioe) {
+            assertTrue(ioe.getMessage(), ioe.getMessage().contains(message));
+        }
+        List<String> files = new ArrayList<String>();
+        list(restored, files);
+        assertEquals(Arrays.asList(), files);
+    }
+
+    private static List<String> temporaryFiles(File dir) {
+        List<String> files = new ArrayList<String>();
+        list(dir, files);
+        List<String> tmp = new ArrayList<String>();
+        for (String file : files) {
+            if (file.endsWith(".tmp")) {
+                tmp.add(file);
+            }
+        }
+        return tmp;
+    }
+
+    private static void list(File dir, List<String> files) {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File f : children) {
+                if (f.isDirectory()) {
+                    list(f, files);
+                } else {
+                    files.add(f.getPath());
+                }
+            }
+        }
+    }
+
+    private static byte[] gunzip(File file) throws IOException {
+        InputStream in = new GZIPInputStream(new FileInputStream(file));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int read;
+            while ((read = in.read(buf)) != -1) {
+                out.write(buf, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void gzip(byte[] content, File file) throws IOException {
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static int indexOf(byte[] content, byte[] find) {
+        for (int i = 0; i + find.length <= content.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(content, i, i + find.length), find)) {
+                return i;
+            }
+        }
+        throw new AssertionError("Not found");
+    }
+}
@@ -0,0 +1,88 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Several builds running at once, as in a parallel reactor build, sharing the
+ * cache files, the backend and the pattern replacer.
+ */
+public class ConcurrentEngineTest extends EngineTestCase {
+
+    private static final int BUILDS = 6;
+    private static final int KEYS = 30;
+
+    public void testConcurrentBuilds() throws Exception {
+        final PatternReplacer replacer = new PatternReplacer();
+        replacer.addPattern("\\$\\{\\w*\\}");
+        replacer.addPattern("\\%\\{\\w*\\}");
+        backend.setDelay(5);
+
+        ExecutorService executor = Executors.newFixedThreadPool(BUILDS);
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (int b = 0; b < BUILDS; b++) {
+                final File buildSource = new File(source, "build" + b);
+                final File buildTarget = new File(target, "build" + b);
+                List<String> namesAndValues = new ArrayList<String>(Arrays.asList(
+                        "shared", "Shared text with ${name}"));
+                for (int k = 0; k < KEYS; k++) {
+                    namesAndValues.add("build" + b + ".key" + k);
+                    namesAndValues.add("Build " + b + " text " + k + " for ${user" + k + "} and %{other}");
+                }
+                write(new File(buildSource, "messages_en.properties"),
+                        namesAndValues.toArray(new String[namesAndValues.size()]));
+                futures.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        TranslationEngine engine = newEngine();
+                        engine.setSourceDirectory(buildSource);
+                        engine.setTargetDirectory(buildTarget);
+                        engine.setReplacer(replacer);
+                        engine.setMaxConcurrentRequests(2);
+                        engine.run();
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int b = 0; b < BUILDS; b++) {
+            PropertiesWithoutComments output = load(new File(target, "build" + b + "/messages_fr.properties"));
+            assertEquals(KEYS + 1, output.size());
+            assertEquals("fr:Shared text with ${name}", output.getProperty("shared"));
+            for (int k = 0; k < KEYS; k++) {
+                assertEquals("fr:Build " + b + " text " + k + " for ${user" + k + "} and %{other}",
+                        output.getProperty("build" + b + ".key" + k));
+            }
+        }
+
+        // Every build's entries survive in the one cache file they all wrote
+        PropertiesWithoutComments cached = CacheFiles.load(new File(cache, "messages_fr.properties"));
+        assertEquals(BUILDS * KEYS + 1, cached.size());
+        for (int b = 0; b < BUILDS; b++) {
+            for (int k = 0; k < KEYS; k++) {
+                assertNotNull(cached.getProperty("build" + b + ".key" + k));
+            }
+        }
+
+        // So a following build translates nothing
+        backend.reset();
+        TranslationEngine engine = newEngine();
+        engine.setSourceDirectory(new File(source, "build0"));
+        engine.setTargetDirectory(new File(target, "build0"));
+        engine.setReplacer(replacer);
+        engine.run();
+        assertEquals(0, backend.getRequests());
+    }
+}
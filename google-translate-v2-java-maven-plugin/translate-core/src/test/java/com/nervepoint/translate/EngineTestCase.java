@@ -0,0 +1,115 @@
+package com.nervepoint.translate;
+
+import junit.framework.TestCase;
+
+import java.io.*;
+import java.nio.file.Files;
+
+/**
+ * Base for tests that run the engine over bundles in a temporary folder.
+ */
+public abstract class EngineTestCase extends TestCase {
+// ------------------------------ FIELDS ------------------------------
+
+    protected File root;
+    protected File source;
+    protected File target;
+    protected File cache;
+    protected RecordingBackend backend;
+
+// -------------------------- OTHER METHODS --------------------------
+
+    @Override
+    protected void setUp() throws Exception {
+        root = Files.createTempDirectory("translate-test").toFile();
+        source = new File(root, "src");
+        target = new File(root, "out");
+        cache = new File(root, "cache");
+        source.mkdirs();
+        backend = new RecordingBackend();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(root);
+    }
+
+    protected TranslationEngine newEngine() {
+        return newEngine(new QuietLog());
+    }
+
+    protected TranslationEngine newEngine(TranslateLog log) {
+        TranslationEngine engine = new TranslationEngine(log);
+        engine.setSourceDirectory(source);
+        engine.setTargetDirectory(target);
+        engine.setCacheDirectory(cache);
+        engine.setMasterCacheDirectory(cache);
+        engine.setLanguages("fr");
+        engine.setSharedCacheSize(0);
+        engine.setBackendFactory(backend);
+        return engine;
+    }
+
+    /**
+     * Write a bundle from alternating names and values.
+     */
+    protected static void write(File file, String... namesAndValues) throws IOException {
+        file.getParentFile().mkdirs();
+        PropertiesWithoutComments p = new PropertiesWithoutComments();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            p.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            p.store(out, null);
+        } finally {
+            out.close();
+        }
+    }
+
+    protected static PropertiesWithoutComments load(File file) throws IOException {
+        PropertiesWithoutComments p = new PropertiesWithoutComments();
+        if (file.exists()) {
+            Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            try {
+                p.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        return p;
+    }
+
+    protected static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    protected static class QuietLog implements TranslateLog {
+        public boolean isDebugEnabled() {
+            return false;
+        }
+
+        public void debug(String message) {
+        }
+
+        public void info(String message) {
+        }
+
+        public void warn(String message) {
+        }
+
+        public void error(String message) {
+        }
+
+        public void error(Throwable error) {
+        }
+    }
+}
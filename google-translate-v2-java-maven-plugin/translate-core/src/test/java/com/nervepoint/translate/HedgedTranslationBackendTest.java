@@ -0,0 +1,137 @@
+package com.nervepoint.translate;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class HedgedTranslationBackendTest extends TestCase {
+
+    public void testNothingHedgedUntilEnoughSamples() throws Exception {
+        ScriptedBackend delegate = new ScriptedBackend();
+        delegate.script(10, 10, 10, 300);
+        HedgedTranslationBackend backend = new HedgedTranslationBackend(new EngineTestCase.QuietLog(), delegate, 90, 1);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Collections.singletonList("fr:text"), backend.translate(Collections.singletonList("text"), "en", "fr"));
+        }
+        assertEquals(4, backend.getRequests());
+        assertEquals(0, backend.getHedges());
+        assertEquals(4, delegate.getCalls());
+    }
+
+    public void testSlowRequestIsHedged() throws Exception {
+        ScriptedBackend delegate = new ScriptedBackend();
+        HedgedTranslationBackend backend = new HedgedTranslationBackend(new EngineTestCase.QuietLog(), delegate, 90, 0.5);
+        warmUp(backend, delegate);
+
+        // The first attempt stalls, the hedge answers quickly
+        delegate.script(5000, 10);
+        long started = System.currentTimeMillis();
+        assertEquals(Arrays.asList("fr:a", "fr:b"), backend.translate(Arrays.asList("a", "b"), "en", "fr"));
+        assertTrue(System.currentTimeMillis() - started < 2000);
+        assertEquals(1, backend.getHedges());
+        assertEquals(1, backend.getHedgeWins());
+    }
+
+    public void testHedgesAreCapped() throws Exception {
+        ScriptedBackend delegate = new ScriptedBackend();
+        HedgedTranslationBackend backend = new HedgedTranslationBackend(new EngineTestCase.QuietLog(), delegate, 90, 0.01);
+        warmUp(backend, delegate);
+
+        // One hedge in 21 requests would be more than 1%, so the slow request is waited for
+        delegate.script(300);
+        assertEquals(Collections.singletonList("fr:a"), backend.translate(Collections.singletonList("a"), "en", "fr"));
+        assertEquals(0, backend.getHedges());
+        assertEquals(21, delegate.getCalls());
+    }
+
+    public void testFailureIsHedged() throws Exception {
+        ScriptedBackend delegate = new ScriptedBackend();
+        HedgedTranslationBackend backend = new HedgedTranslationBackend(new EngineTestCase.QuietLog(), delegate, 90, 0.5);
+        warmUp(backend, delegate);
+
+        // The first attempt fails while the hedge is still running, so the hedge's answer is used
+        delegate.script(-300, 600);
+        assertEquals(Collections.singletonList("fr:a"), backend.translate(Collections.singletonList("a"), "en", "fr"));
+        assertEquals(1, backend.getHedges());
+        assertEquals(1, backend.getHedgeWins());
+    }
+
+    public void testFailureWithoutHedge() throws Exception {
+        ScriptedBackend delegate = new ScriptedBackend();
+        HedgedTranslationBackend backend = new HedgedTranslationBackend(new EngineTestCase.QuietLog(), delegate, 90, 0.5);
+        delegate.script(-1);
+        try {
+            backend.translate(Collections.singletonList("a"), "en", "fr");
+            fail("Expected the failure to be passed on");
+        } catch (IOException ioe) {
+            assertEquals("Failed", ioe.getMessage());
+        }
+    }
+
+    public void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram(10);
+        assertEquals(-1, histogram.getPercentile(50));
+        for (int i = 1; i <= 20; i++) {
+            histogram.record(i);
+        }
+        // Only the latest 10 are kept
+        assertEquals(10, histogram.getCount());
+        assertEquals(11, histogram.getPercentile(0));
+        assertEquals(15, histogram.getPercentile(50));
+        assertEquals(19, histogram.getPercentile(90));
+        assertEquals(20, histogram.getPercentile(100));
+    }
+
+    /**
+     * Enough quick requests to start hedging.
+     */
+    private static void warmUp(HedgedTranslationBackend backend, ScriptedBackend delegate) throws IOException {
+        for (int i = 0; i < 20; i++) {
+            delegate.script(10);
+            backend.translate(Collections.singletonList("warm up"), "en", "fr");
+        }
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * Answers each call after the next of a list of delays, or fails after
+     * it if the delay is negative. Calls beyond the list answer at once.
+     */
+    private static class ScriptedBackend extends RecordingBackend {
+        private final List<Long> delays = new ArrayList<Long>();
+        private int calls;
+
+        synchronized void script(long... delays) {
+            for (long delay : delays) {
+                this.delays.add(delay);
+            }
+        }
+
+        synchronized int getCalls() {
+            return calls;
+        }
+
+        @Override
+        public List<String> translate(List<String> sources, String sourceLang, String targetLang) throws IOException {
+            long delay;
+            synchronized (this) {
+                calls++;
+                delay = delays.isEmpty() ? 0 : delays.remove(0);
+            }
+            try {
+                Thread.sleep(Math.abs(delay));
+            } catch (InterruptedException ie) {
+                throw new IOException("Interrupted");
+            }
+            if (delay < 0) {
+                throw new IOException("Failed");
+            }
+            return super.translate(sources, sourceLang, targetLang);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class OverrideTest extends EngineTestCase {
+
+    public void testOverriddenTextsAreNotTranslated() throws Exception {
+        write(new File(source, "messages_en.properties"), "hello", "Hello", "world", "World");
+        write(new File(source, "messages_fr.properties"), "hello", "Salut", "extra", "Seulement ici");
+        List<String> messages = new ArrayList<String>();
+        newEngine(new RecordingLog(messages)).run();
+
+        assertEquals(Arrays.asList("World"), backend.getTexts());
+        PropertiesWithoutComments out = load(new File(target, "messages_fr.properties"));
+        assertEquals("Salut", out.getProperty("hello"));
+        assertEquals("fr:World", out.getProperty("world"));
+        // Keys only in the override file are copied too
+        assertEquals("Seulement ici", out.getProperty("extra"));
+        assertEquals(3, out.size());
+
+        // Overrides are never cached, nor taken as source bundles
+        PropertiesWithoutComments cached = CacheFiles.load(new File(cache, "messages_fr.properties"));
+        assertEquals(Collections.singleton("world"), cached.stringPropertyNames());
+        assertFalse(new File(target, "messages_fr_fr.properties").exists());
+
+        assertTrue(messages.toString(), messages.contains("Used 1 override translations, saving 5 characters of translation"));
+    }
+
+    public void testChangingOverrides() throws Exception {
+        write(new File(source, "messages_en.properties"), "hello", "Hello", "world", "World");
+        File override = new File(source, "messages_fr.properties");
+        write(override, "hello", "Salut");
+        newEngine().run();
+
+        // A changed override is used without any request
+        backend.reset();
+        write(override, "hello", "Bonjour", "world", "Monde");
+        TranslationEngine engine = newEngine();
+        engine.run(Collections.singleton("messages_fr.properties"));
+        assertEquals(0, backend.getRequests());
+        PropertiesWithoutComments out = load(new File(target, "messages_fr.properties"));
+        assertEquals("Bonjour", out.getProperty("hello"));
+        assertEquals("Monde", out.getProperty("world"));
+
+        // and one removed from the override file is translated
+        write(override, "world", "Monde");
+        engine.run();
+        assertEquals(Arrays.asList("Hello"), backend.getTexts());
+        out = load(new File(target, "messages_fr.properties"));
+        assertEquals("fr:Hello", out.getProperty("hello"));
+        assertEquals("Monde", out.getProperty("world"));
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private static class RecordingLog extends QuietLog {
+        private final List<String> messages;
+
+        RecordingLog(List<String> messages) {
+            this.messages = messages;
+        }
+
+        @Override
+        public void info(String message) {
+            messages.add(message);
+        }
+    }
+}
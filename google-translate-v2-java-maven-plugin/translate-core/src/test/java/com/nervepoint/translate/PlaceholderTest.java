@@ -0,0 +1,81 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PlaceholderTest extends EngineTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        backend = new ManglingBackend();
+    }
+
+    public void testOnlyTheAffectedTextIsSentAgain() throws Exception {
+        write(new File(source, "messages_en.properties"),
+                "a", "Hello ${name}", "b", "Fragile ${name} text", "c", "Goodbye", "d", "Always fragile ${name} text");
+        TranslationEngine engine = newEngine();
+        engine.setReplacer(newReplacer());
+        engine.run();
+
+        PropertiesWithoutComments out = load(new File(target, "messages_fr.properties"));
+        assertEquals("fr:Hello ${name}", out.getProperty("a"));
+        assertEquals("fr:Goodbye", out.getProperty("c"));
+        // Sent again on its own
+        assertEquals("fr:Fragile ${name} text", out.getProperty("b"));
+        // Sent again a fragment at a time
+        assertEquals("fr:Always fragile ${name} fr:text", out.getProperty("d"));
+
+        List<String> texts = backend.getTexts();
+        assertEquals(1, count(texts, "Hello _999_"));
+        assertEquals(2, count(texts, "Fragile _999_ text"));
+        assertEquals(2, count(texts, "Always fragile _999_ text"));
+        assertEquals(1, count(texts, "Always fragile"));
+        assertEquals(1, count(texts, "text"));
+
+        // Everything was restored, so the next build sends nothing
+        backend.reset();
+        engine = newEngine();
+        engine.setReplacer(newReplacer());
+        engine.run();
+        assertEquals(0, backend.getRequests());
+    }
+
+    private static PatternReplacer newReplacer() {
+        PatternReplacer replacer = new PatternReplacer();
+        replacer.addPattern("\\$\\{\\w*\\}");
+        return replacer;
+    }
+
+    private static int count(List<String> texts, String text) {
+        int count = 0;
+        for (String t : texts) {
+            if (t.equals(text)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    /**
+     * Loses the placeholder of "Fragile" texts when they are sent in a batch
+     * with others, and of "Always fragile" texts however they are sent.
+     */
+    private static class ManglingBackend extends RecordingBackend {
+        @Override
+        public List<String> translate(List<String> sources, String sourceLang, String targetLang) throws IOException {
+            List<String> translated = new ArrayList<String>(super.translate(sources, sourceLang, targetLang));
+            for (int i = 0; i < sources.size(); i++) {
+                String source = sources.get(i);
+                if (source.startsWith("Always fragile ") || (source.startsWith("Fragile ") && sources.size() > 1)) {
+                    translated.set(i, translated.get(i).replace("_999_", ""));
+                }
+            }
+            return translated;
+        }
+    }
+}
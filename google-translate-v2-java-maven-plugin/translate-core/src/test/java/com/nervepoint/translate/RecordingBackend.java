@@ -0,0 +1,83 @@
+package com.nervepoint.translate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A backend for tests that "translates" by prefixing each text with the
+ * target language, and records what it was asked to translate.
+ */
+public class RecordingBackend implements TranslationBackend, TranslationBackendFactory {
+// ------------------------------ FIELDS ------------------------------
+
+    private final List<String> texts = new ArrayList<String>();
+    private int requests;
+    private long delay;
+
+// --------------------- GETTER / SETTER METHODS ---------------------
+
+    /**
+     * @param delay time each request takes, in milliseconds
+     */
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    public synchronized int getRequests() {
+        return requests;
+    }
+
+    public synchronized List<String> getTexts() {
+        return new ArrayList<String>(texts);
+    }
+
+    public synchronized void reset() {
+        texts.clear();
+        requests = 0;
+    }
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface TranslationBackend ---------------------
+
+    public List<String> translate(List<String> sources, String sourceLang, String targetLang) throws IOException {
+        synchronized (this) {
+            requests++;
+            texts.addAll(sources);
+        }
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ie) {
+                throw new IOException("Interrupted");
+            }
+        }
+        List<String> translated = new ArrayList<String>();
+        for (String source : sources) {
+            translated.add(translate(source, targetLang));
+        }
+        return translated;
+    }
+
+// --------------------- Interface TranslationBackendFactory ---------------------
+
+    public String getName() {
+        return "recording";
+    }
+
+    public boolean isPersistent() {
+        return true;
+    }
+
+    public TranslationBackend create(TranslateLog log, String apikey) {
+        return this;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    protected String translate(String source, String targetLang) {
+        return targetLang + ":" + source;
+    }
+}
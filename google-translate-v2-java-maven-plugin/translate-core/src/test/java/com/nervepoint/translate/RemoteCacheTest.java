@@ -0,0 +1,142 @@
+package com.nervepoint.translate;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class RemoteCacheTest extends EngineTestCase {
+
+    private final static String TOKEN = "secret";
+
+    private RemoteCacheServer server;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        server = new RemoteCacheServer(new File(root, "remote"));
+        server.setToken(TOKEN);
+        server.start(0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop();
+        super.tearDown();
+    }
+
+    public void testGetAndPut() {
+        RemoteCache remote = new RemoteCache(new QuietLog(), "http://localhost:" + server.getPort(), true, 5000);
+        remote.setToken(TOKEN);
+        String a = CacheFiles.hash("a");
+        String b = CacheFiles.hash("b");
+        String c = CacheFiles.hash("c");
+        remote.put(Arrays.asList(a, c), Arrays.asList("Text A", "Text \u00c7"));
+
+        String[] results = remote.get(Arrays.asList(a, b, c));
+        assertEquals(Arrays.asList("Text A", null, "Text \u00c7"), Arrays.asList(results));
+        assertEquals(2, remote.getHits());
+        assertEquals(1, remote.getMisses());
+    }
+
+    public void testReadOnly() {
+        RemoteCache remote = new RemoteCache(new QuietLog(), "http://localhost:" + server.getPort(), false, 5000);
+        remote.put(CacheFiles.hash("a"), "Text A");
+        assertNull(remote.get(CacheFiles.hash("a")));
+    }
+
+    public void testStoringNeedsTheToken() throws Exception {
+        String a = CacheFiles.hash("a");
+        for (String token : new String[]{null, "wrong"}) {
+            RemoteCache remote = new RemoteCache(new QuietLog(), "http://localhost:" + server.getPort(), true, 5000);
+            remote.setToken(token);
+            remote.put(Arrays.asList(a, CacheFiles.hash("b")), Arrays.asList("Poisoned", "Poisoned"));
+            assertNull(remote.get(a));
+            // Still usable for reading
+            assertEquals(1, remote.getMisses());
+        }
+
+        // A server without a token stores nothing
+        server.stop();
+        server.setToken(null);
+        server.start(0);
+        assertTrue(server.isReadOnly());
+        RemoteCache remote = new RemoteCache(new QuietLog(), "http://localhost:" + server.getPort(), true, 5000);
+        remote.setToken(TOKEN);
+        remote.put(a, "Poisoned");
+        assertNull(remote.get(a));
+    }
+
+    public void testListensOnLoopbackByDefault() {
+        assertTrue(server.getAddress().getAddress().isLoopbackAddress());
+    }
+
+    public void testBatchIsFetchedConcurrently() throws Exception {
+        HttpServer slow = HttpServer.create(new InetSocketAddress(0), 0);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        slow.setExecutor(executor);
+        slow.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ie) {
+                    throw new IOException(ie);
+                }
+                server.handle(exchange);
+            }
+        });
+        slow.start();
+        try {
+            RemoteCache remote = new RemoteCache(new QuietLog(),
+                    "http://localhost:" + slow.getAddress().getPort(), true, 5000);
+            List<String> keys = new ArrayList<String>();
+            for (int i = 0; i < 10; i++) {
+                keys.add(CacheFiles.hash("text " + i));
+            }
+            long started = System.currentTimeMillis();
+            remote.get(keys);
+            assertTrue(System.currentTimeMillis() - started < 10 * 200);
+            assertEquals(10, remote.getMisses());
+        } finally {
+            slow.stop(0);
+            executor.shutdown();
+        }
+    }
+
+    public void testAgentsShareTranslations() throws Exception {
+        write(new File(source, "messages_en.properties"), "a", "First text", "b", "Second text");
+        TranslationEngine engine = newEngine();
+        engine.setRemoteCacheUrl("http://localhost:" + server.getPort());
+        engine.setRemoteCacheToken(TOKEN);
+        engine.run();
+        assertEquals(2, backend.getTexts().size());
+
+        // Another agent, with an empty local cache
+        backend.reset();
+        delete(cache);
+        engine = newEngine();
+        engine.setRemoteCacheUrl("http://localhost:" + server.getPort());
+        engine.run();
+        assertEquals(0, backend.getRequests());
+        assertEquals("fr:Second text", load(new File(target, "messages_fr.properties")).getProperty("b"));
+    }
+
+    public void testUnreachableServerIsIgnored() throws Exception {
+        write(new File(source, "messages_en.properties"), "a", "First text");
+        server.stop();
+        TranslationEngine engine = newEngine();
+        engine.setRemoteCacheUrl("http://localhost:" + server.getPort());
+        engine.setRemoteCacheTimeout(1000);
+        engine.run();
+        assertEquals("fr:First text", load(new File(target, "messages_fr.properties")).getProperty("a"));
+        server.start(0);
+    }
+}
@@ -0,0 +1,62 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+public class SegmenterTest extends EngineTestCase {
+
+    private static final String TEXT = "The first sentence is here. The second one follows!  "
+            + "Is this the third? And the last one.";
+
+    public void testSplitKeepsWhitespaceApart() {
+        List<Segmenter.Segment> segments = new Segmenter("en").split(TEXT);
+        assertEquals(4, segments.size());
+        assertEquals("The second one follows!", segments.get(1).getText());
+
+        StringBuilder b = new StringBuilder();
+        for (Segmenter.Segment segment : segments) {
+            b.append(segment.getLeading()).append(segment.getText()).append(segment.getTrailing());
+        }
+        assertEquals(TEXT, b.toString());
+    }
+
+    public void testSegmentKeys() {
+        String key = Segmenter.segmentKey("help.text", "abc");
+        assertTrue(Segmenter.isSegmentKey(key));
+        assertFalse(Segmenter.isSegmentKey("help.text"));
+        assertEquals("help.text", Segmenter.baseKey(key));
+        assertEquals("help.text", Segmenter.baseKey("help.text"));
+    }
+
+    public void testEditOnlyTranslatesChangedSentence() throws Exception {
+        File bundle = new File(source, "help_en.properties");
+        write(bundle, "help", TEXT, "short", "Short text.");
+
+        TranslationEngine engine = newEngine();
+        engine.setSegmentThreshold(40);
+        engine.run();
+        assertEquals(5, backend.getTexts().size());
+        PropertiesWithoutComments out = load(new File(target, "help_fr.properties"));
+        assertEquals("fr:The first sentence is here. fr:The second one follows!  "
+                + "fr:Is this the third? fr:And the last one.", out.getProperty("help"));
+        assertEquals("fr:Short text.", out.getProperty("short"));
+
+        backend.reset();
+        write(bundle, "help", TEXT.replace("third", "3rd"), "short", "Short text.");
+        engine = newEngine();
+        engine.setSegmentThreshold(40);
+        engine.run();
+        assertEquals(Arrays.asList("Is this the 3rd?"), backend.getTexts());
+        out = load(new File(target, "help_fr.properties"));
+        assertEquals("fr:The first sentence is here. fr:The second one follows!  "
+                + "fr:Is this the 3rd? fr:And the last one.", out.getProperty("help"));
+
+        // Once assembled, the whole text is cached and needs nothing next time
+        backend.reset();
+        engine = newEngine();
+        engine.setSegmentThreshold(40);
+        engine.run();
+        assertEquals(0, backend.getRequests());
+    }
+}
@@ -0,0 +1,111 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.util.*;
+
+public class ShardingTest extends EngineTestCase {
+
+    private static final String[] LANGUAGES = {"fr", "de", "es", "it"};
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        for (int i = 0; i < 6; i++) {
+            write(new File(source, "m" + (i % 2) + "/bundle" + i + "_en.properties"),
+                    "title", "Title " + i, "text", "Some text " + i);
+        }
+    }
+
+    public void testShardsSplitTheWorkAndMerge() throws Exception {
+        int shardCount = 3;
+        File shards = new File(root, "shards");
+        for (int i = 0; i < shardCount; i++) {
+            TranslationEngine engine = newEngine();
+            engine.setLanguages("fr,de,es,it");
+            engine.setShardIndex(i);
+            engine.setShardCount(shardCount);
+            engine.setWriteCacheDirectory(new File(shards, "shard-" + i));
+            engine.run();
+        }
+
+        // Every text of every bundle and language was translated exactly once
+        assertEquals(6 * LANGUAGES.length * 2, backend.getTexts().size());
+
+        Set<String> units = new HashSet<String>();
+        for (int i = 0; i < shardCount; i++) {
+            for (String unit : list(new File(shards, "shard-" + i), "")) {
+                assertTrue(unit + " was translated by two shards", units.add(unit));
+            }
+        }
+        assertEquals(6 * LANGUAGES.length, units.size());
+
+        // Nothing was written to the shared cache by the shards
+        assertFalse(cache.exists() && list(cache, "").size() > 0);
+
+        ShardMerger merger = new ShardMerger(new QuietLog(), new PatternReplacer());
+        for (String unit : units) {
+            String base = unit.substring(0, unit.lastIndexOf('_'));
+            for (int i = 0; i < shardCount; i++) {
+                File delta = new File(new File(shards, "shard-" + i), unit);
+                if (delta.exists()) {
+                    merger.merge(new File(cache, unit), Collections.singletonList(delta),
+                            new File(source, base + "_en.properties"));
+                }
+            }
+        }
+        assertEquals(0, merger.getConflicts());
+
+        // An unsharded build now finds everything in the cache
+        backend.reset();
+        TranslationEngine engine = newEngine();
+        engine.setLanguages("fr,de,es,it");
+        engine.run();
+        assertEquals(0, backend.getRequests());
+        assertEquals("de:Title 3", load(new File(target, "m1/bundle3_de.properties")).getProperty("title"));
+    }
+
+    public void testConflictKeepsEntryForCurrentSource() throws Exception {
+        File sourceFile = new File(source, "m0/bundle0_en.properties");
+        String current = CacheFiles.hash("Title 0") + "|fr:Title 0";
+        String stale = CacheFiles.hash("Old title") + "|fr:Old title";
+
+        File cacheFile = new File(cache, "m0/bundle0_fr.properties");
+        File delta = new File(root, "shard-0/m0/bundle0_fr.properties");
+
+        // A shard with the current translation replaces a stale cache entry
+        store(cacheFile, "title", stale);
+        store(delta, "title", current);
+        ShardMerger merger = new ShardMerger(new QuietLog(), new PatternReplacer());
+        merger.merge(cacheFile, Collections.singletonList(delta), sourceFile);
+        assertEquals(current, CacheFiles.load(cacheFile).getProperty("title"));
+
+        // A stale shard entry does not replace a current cache entry
+        store(delta, "title", stale);
+        merger.merge(cacheFile, Collections.singletonList(delta), sourceFile);
+        assertEquals(current, CacheFiles.load(cacheFile).getProperty("title"));
+        assertEquals(2, merger.getConflicts());
+    }
+
+    private static void store(File file, String name, String value) throws Exception {
+        PropertiesWithoutComments p = new PropertiesWithoutComments();
+        p.put(name, value);
+        file.delete();
+        CacheFiles.store(file, new HashMap<Object, Object>(), p, null);
+    }
+
+    private static List<String> list(File dir, String path) {
+        List<String> paths = new ArrayList<String>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                String rel = path.equals("") ? f.getName() : path + "/" + f.getName();
+                if (f.isDirectory()) {
+                    paths.addAll(list(f, rel));
+                } else if (f.getName().endsWith(".properties")) {
+                    paths.add(rel);
+                }
+            }
+        }
+        return paths;
+    }
+}
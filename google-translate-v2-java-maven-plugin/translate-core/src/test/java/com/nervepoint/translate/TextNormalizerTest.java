@@ -0,0 +1,78 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class TextNormalizerTest extends EngineTestCase {
+
+    public void testNormalize() {
+        TextNormalizer n = TextNormalizer.normalize(" \tSave  the\tfile\r\nnow\rplease \n");
+        assertEquals("Save the file\nnow\nplease", n.getCore());
+        assertEquals(" \tSaved \n", n.restore("Saved"));
+        assertTrue(n.isChanged(" \tSave  the\tfile\r\nnow\rplease \n"));
+
+        // Decomposed characters are composed
+        assertEquals("Café", TextNormalizer.normalize("Café").getCore());
+        assertFalse(TextNormalizer.normalize("Plain text").isChanged("Plain text"));
+    }
+
+    public void testCacheRoundTrip() {
+        String text = "  Save  the file\r\n";
+        TextNormalizer n = TextNormalizer.normalize(text);
+        String entry = n.toCache("fr:Save the file");
+        assertTrue(entry.startsWith(TextNormalizer.PREFIX));
+
+        // The edges of the text looked up are put back, whether or not normalization is on
+        assertEquals("  fr:Save the file\r\n", TextNormalizer.fromCache(entry, text, false));
+        assertEquals("  fr:Save the file\r\n", TextNormalizer.fromCache(entry, text, true));
+        assertEquals("fr:Save the file\t", TextNormalizer.fromCache(entry, "Save the\tfile\t", false));
+        assertNull(TextNormalizer.fromCache(entry, "Save the files", true));
+    }
+
+    public void testLegacyEntries() {
+        String text = " Save  the file";
+        String exact = CacheFiles.hash(text) + "|fr:exact";
+        assertEquals("fr:exact", TextNormalizer.fromCache(exact, text, false));
+        assertEquals("fr:exact", TextNormalizer.fromCache(exact, text, true));
+
+        // An entry for the normalized text only matches with normalization on
+        String core = CacheFiles.hash("Save the file") + "|fr:core";
+        assertNull(TextNormalizer.fromCache(core, text, false));
+        assertEquals(" fr:core", TextNormalizer.fromCache(core, text, true));
+        assertNull(TextNormalizer.fromCache("no separator", text, true));
+    }
+
+    public void testEngine() throws Exception {
+        File bundle = new File(source, "messages_en.properties");
+        write(bundle, "b", "Save the file", "blank", " \t ", "empty", "");
+        TranslationEngine engine = newEngine();
+        engine.setNormalizeCacheKeys(true);
+        engine.run();
+
+        // Blank texts are never sent
+        assertEquals(Arrays.asList("Save the file"), backend.getTexts());
+        PropertiesWithoutComments out = load(new File(target, "messages_fr.properties"));
+        assertEquals("fr:Save the file", out.getProperty("b"));
+        assertEquals(" \t ", out.getProperty("blank"));
+        assertEquals("", out.getProperty("empty"));
+
+        // and changing only the white space of a text keeps its translation
+        backend.reset();
+        write(bundle, "b", " Save  the file ", "blank", " ", "empty", "");
+        engine = newEngine();
+        engine.setNormalizeCacheKeys(true);
+        engine.run();
+        assertEquals(0, backend.getRequests());
+        out = load(new File(target, "messages_fr.properties"));
+        assertEquals(" fr:Save the file ", out.getProperty("b"));
+        assertEquals(" ", out.getProperty("blank"));
+
+        backend.reset();
+        write(bundle, "b", "Save the\tfile\n");
+        engine = newEngine();
+        engine.setNormalizeCacheKeys(true);
+        engine.run();
+        assertEquals(0, backend.getRequests());
+        assertEquals("fr:Save the file\n", load(new File(target, "messages_fr.properties")).getProperty("b"));
+    }
+}
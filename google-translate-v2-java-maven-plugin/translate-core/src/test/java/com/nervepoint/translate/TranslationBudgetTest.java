@@ -0,0 +1,148 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TranslationBudgetTest extends EngineTestCase {
+
+    public void testUnlimited() {
+        TranslationBudget budget = new TranslationBudget(0, 0);
+        assertTrue(budget.tryAcquire(1000000));
+        assertFalse(budget.isExhausted());
+        assertEquals(1000000, budget.getCharacters());
+    }
+
+    public void testCharacterLimitStaysUsedUp() {
+        TranslationBudget budget = new TranslationBudget(0, 10);
+        assertTrue(budget.tryAcquire(6));
+        assertFalse(budget.tryAcquire(6));
+        // A smaller text would fit, but the remaining texts all wait for the next build
+        assertFalse(budget.tryAcquire(1));
+        assertTrue(budget.isExhausted());
+        assertEquals(6, budget.getCharacters());
+    }
+
+    public void testTimeLimit() throws Exception {
+        TranslationBudget budget = new TranslationBudget(50, 0);
+        assertTrue(budget.tryAcquire(10));
+        Thread.sleep(100);
+        assertTrue(budget.isExhausted());
+        assertFalse(budget.tryAcquire(10));
+    }
+
+    public void testPendingTextsCarryOver() throws Exception {
+        write(new File(source, "messages_en.properties"),
+                "a", "First text", "b", "Second text", "c", "Third text");
+
+        TranslationEngine engine = newEngine();
+        engine.setMaxCharactersPerBuild(20);
+        engine.run();
+
+        PropertiesWithoutComments out = load(new File(target, "messages_fr.properties"));
+        PropertiesWithoutComments cached = CacheFiles.load(new File(cache, "messages_fr.properties"));
+        int translated = 0;
+        for (String name : new String[]{"a", "b", "c"}) {
+            if (out.getProperty(name).startsWith("fr:")) {
+                translated++;
+                assertTrue(cached.containsKey(name));
+            } else {
+                // Pending texts are written in the source language and not cached
+                assertFalse(cached.containsKey(name));
+            }
+        }
+        assertEquals(1, translated);
+
+        // The next build only translates what was left
+        backend.reset();
+        engine = newEngine();
+        engine.run();
+        assertEquals(2, backend.getTexts().size());
+        out = load(new File(target, "messages_fr.properties"));
+        assertEquals("fr:First text", out.getProperty("a"));
+        assertEquals("fr:Second text", out.getProperty("b"));
+        assertEquals("fr:Third text", out.getProperty("c"));
+    }
+
+    public void testTimeLimitStopsSendingBatches() throws Exception {
+        checkTimeLimitStopsSendingBatches(false);
+    }
+
+    public void testTimeLimitStopsSendingPipelineBatches() throws Exception {
+        checkTimeLimitStopsSendingBatches(true);
+    }
+
+    /**
+     * Enough texts for several batches, with a backend slow enough that the
+     * time budget runs out after the first few have been sent.
+     */
+    private void checkTimeLimitStopsSendingBatches(boolean pipeline) throws Exception {
+        List<String> namesAndValues = new ArrayList<String>();
+        for (int i = 0; i < 300; i++) {
+            namesAndValues.add("key" + i);
+            namesAndValues.add("Text number " + i);
+        }
+        for (int i = 0; i < 5; i++) {
+            namesAndValues.add("help" + i);
+            namesAndValues.add("Help text " + i + " has a first sentence. It also has a second one.");
+        }
+        write(new File(source, "messages_en.properties"), namesAndValues.toArray(new String[namesAndValues.size()]));
+        backend.setDelay(400);
+
+        final List<String> warnings = new ArrayList<String>();
+        TranslationEngine engine = newEngine(new QuietLog() {
+            public void warn(String message) {
+                synchronized (warnings) {
+                    warnings.add(message);
+                }
+            }
+        });
+        engine.setSegmentThreshold(40);
+        engine.setMaxTranslationTime(1);
+        engine.setPipeline(pipeline);
+        engine.setPipelineTranslateThreads(1);
+        engine.run();
+
+        // Only the batches sent before the deadline, not all seven
+        assertTrue(String.valueOf(backend.getRequests()), backend.getRequests() >= 1);
+        assertTrue(String.valueOf(backend.getRequests()), backend.getRequests() <= 3);
+
+        PropertiesWithoutComments out = load(new File(target, "messages_fr.properties"));
+        PropertiesWithoutComments cached = CacheFiles.load(new File(cache, "messages_fr.properties"));
+        int pending = 0;
+        for (int i = 0; i < namesAndValues.size(); i += 2) {
+            String name = namesAndValues.get(i);
+            if (out.getProperty(name).equals(namesAndValues.get(i + 1))) {
+                // Left in the source language, and not cached
+                assertFalse(cached.containsKey(name));
+                pending++;
+            } else {
+                assertEquals("fr:", out.getProperty(name).substring(0, 3));
+                assertTrue(cached.containsKey(name));
+            }
+        }
+        assertTrue(pending > 0);
+        String summary = warnings.get(warnings.size() - 1);
+        assertTrue(summary, summary.endsWith(", " + pending + " texts are pending translation"));
+        for (String warning : warnings) {
+            assertFalse(warning, warning.contains("lost their untranslatable content"));
+        }
+
+        // The next build translates the rest
+        backend.reset();
+        backend.setDelay(0);
+        engine = newEngine();
+        engine.setSegmentThreshold(40);
+        engine.setPipeline(pipeline);
+        engine.run();
+        out = load(new File(target, "messages_fr.properties"));
+        for (int i = 0; i < 300; i++) {
+            assertEquals("fr:Text number " + i, out.getProperty("key" + i));
+        }
+        for (int i = 0; i < 5; i++) {
+            // Translated a sentence at a time
+            assertEquals("fr:Help text " + i + " has a first sentence. fr:It also has a second one.",
+                    out.getProperty("help" + i));
+        }
+    }
+}
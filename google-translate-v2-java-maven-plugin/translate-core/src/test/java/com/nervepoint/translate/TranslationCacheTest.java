@@ -0,0 +1,124 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TranslationCacheTest extends EngineTestCase {
+
+    @Override
+    protected void tearDown() throws Exception {
+        TranslationCache.getShared(0).clear();
+        BundleCache.getShared(0).clear();
+        super.tearDown();
+    }
+
+    public void testEviction() {
+        TranslationCache cache = new TranslationCache(2 * TranslationCache.weigh("k1", "text"));
+        cache.put("k1", "text");
+        cache.put("k2", "text");
+        assertEquals("text", cache.get("k1"));
+        // k2 is now the least recently used
+        cache.put("k3", "text");
+        assertNull(cache.get("k2"));
+        assertEquals("text", cache.get("k1"));
+        assertEquals("text", cache.get("k3"));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    public void testOffByDefault() throws Exception {
+        write(new File(source, "messages_en.properties"), "a", "First text");
+        TranslationEngine engine = new TranslationEngine(new QuietLog());
+        engine.setSourceDirectory(source);
+        engine.setTargetDirectory(target);
+        engine.setCacheDirectory(cache);
+        engine.setMasterCacheDirectory(cache);
+        engine.setLanguages("fr");
+        engine.setBackendFactory(backend);
+        engine.run();
+        assertEquals(0, TranslationCache.getShared(0).size());
+    }
+
+    public void testSharedBetweenEngines() throws Exception {
+        write(new File(source, "messages_en.properties"), "a", "First text", "b", "Second text");
+        List<String> messages = new ArrayList<String>();
+        TranslationEngine engine = newEngine(new RecordingLog(messages));
+        engine.setSharedCacheSize(1024 * 1024);
+        engine.run();
+        assertEquals(2, backend.getTexts().size());
+        assertTrue(messages.toString(), messages.contains("Shared cache had 0 of 2 texts, holding 2 translations in 0KB"));
+
+        // Another module, with its own cache files, finds them in memory
+        backend.reset();
+        delete(cache);
+        messages.clear();
+        engine = newEngine(new RecordingLog(messages));
+        engine.setSharedCacheSize(1024 * 1024);
+        engine.run();
+        assertEquals(0, backend.getRequests());
+        assertEquals("fr:Second text", load(new File(target, "messages_fr.properties")).getProperty("b"));
+        // Only this engine's lookups are counted
+        assertTrue(messages.toString(), messages.contains("Shared cache had 2 of 2 texts, holding 2 translations in 0KB"));
+    }
+
+    public void testUnchangedFilesAreNotReadAgain() throws Exception {
+        write(new File(source, "messages_en.properties"), "a", "First text", "b", "Second text");
+        TranslationEngine engine = newEngine();
+        engine.setSharedCacheSize(1024 * 1024);
+        engine.run();
+        engine.run();
+
+        // Source, override and cache files all come from memory
+        BundleCache files = BundleCache.getShared(1024 * 1024);
+        int hits = files.getHits();
+        int misses = files.getMisses();
+        backend.reset();
+        engine = newEngine();
+        engine.setSharedCacheSize(1024 * 1024);
+        engine.run();
+        assertEquals(0, backend.getRequests());
+        assertEquals(hits + 3, files.getHits());
+        assertEquals(misses, files.getMisses());
+
+        // A cache file changed by something else is read again
+        File cacheFile = new File(cache, "messages_fr.properties");
+        PropertiesWithoutComments cached = CacheFiles.load(cacheFile);
+        cached.put("a", CacheFiles.hash("First text") + "|fr:Changed elsewhere");
+        CacheFiles.store(cacheFile, CacheFiles.snapshot(CacheFiles.load(cacheFile)), cached, null);
+        engine.run();
+        assertEquals(0, backend.getRequests());
+        assertEquals("fr:Changed elsewhere", load(new File(target, "messages_fr.properties")).getProperty("a"));
+    }
+
+    public void testBundleCacheEviction() throws Exception {
+        File a = new File(source, "a_en.properties");
+        File b = new File(source, "b_en.properties");
+        write(a, "a", "Some text");
+        write(b, "b", "Some text");
+        BundleCache files = new BundleCache(TranslationCache.weigh("a", "Some text"));
+        files.load(a);
+        files.load(b);
+        assertEquals(1, files.size());
+        files.load(b);
+        assertEquals(1, files.getHits());
+        files.load(a);
+        assertEquals(3, files.getMisses());
+    }
+
+// -------------------------- INNER CLASSES --------------------------
+
+    private static class RecordingLog extends QuietLog {
+        private final List<String> messages;
+
+        RecordingLog(List<String> messages) {
+            this.messages = messages;
+        }
+
+        @Override
+        public void info(String message) {
+            messages.add(message);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.nervepoint.translate;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TranslationMemoryTest extends EngineTestCase {
+
+    public void testFind() throws Exception {
+        TranslationMemory memory = new TranslationMemory(new File(root, "tm.properties"));
+        memory.add("Delete user", "Supprimer l'utilisateur");
+        memory.add("Create a new project", "Cr\u00e9er un nouveau projet");
+
+        TranslationMemory.Match match = memory.find("Delete user", 0.9f);
+        assertEquals(1f, match.getSimilarity());
+
+        match = memory.find("Delete users", 0.8f);
+        assertEquals("Delete user", match.getSource());
+        assertEquals("Supprimer l'utilisateur", match.getTarget());
+        assertTrue(match.getSimilarity() < 1f);
+
+        assertNull(memory.find("Delete users", 0.99f));
+        assertNull(memory.find("Something else entirely", 0.5f));
+    }
+
+    public void testSaveAndLoad() throws Exception {
+        File file = new File(root, "tm.properties");
+        TranslationMemory memory = new TranslationMemory(file);
+        memory.add("Delete user", "Supprimer l'utilisateur");
+        memory.save();
+
+        memory = new TranslationMemory(file);
+        memory.load();
+        assertEquals(1, memory.size());
+        assertEquals("Supprimer l'utilisateur", memory.find("Delete user", 1f).getTarget());
+    }
+
+    public void testProvisionalEntries() {
+        String entry = TranslationMemory.toCache("Delete users", "fr:Delete user");
+        assertEquals("fr:Delete user", TranslationMemory.fromCache(entry, "Delete users"));
+        assertNull(TranslationMemory.fromCache(entry, "Delete user"));
+        // Never taken as a translation of the text itself
+        assertNull(TextNormalizer.fromCache(entry, "Delete users", false));
+        assertNull(TranslationMemory.fromCache(CacheFiles.hash("Delete users") + "|x", "Delete users"));
+    }
+
+    public void testAppliedMatchIsKept() throws Exception {
+        File bundle = new File(source, "messages_en.properties");
+        write(bundle, "delete", "Delete the selected user");
+        newMemoryEngine(false).run();
+
+        // A near duplicate is given the match, without a request
+        backend.reset();
+        write(bundle, "delete", "Delete the selected user", "deleteAll", "Delete the selected users");
+        newMemoryEngine(false).run();
+        assertEquals(0, backend.getRequests());
+        assertEquals("fr:Delete the selected user",
+                load(new File(target, "messages_fr.properties")).getProperty("deleteAll"));
+        assertEquals(CacheFiles.hash("Delete the selected users") + "|fr:Delete the selected user",
+                CacheFiles.load(new File(cache, "messages_fr.properties")).getProperty("deleteAll"));
+
+        // and not sent by later builds either
+        newMemoryEngine(false).run();
+        assertEquals(0, backend.getRequests());
+        assertEquals("fr:Delete the selected user",
+                load(new File(target, "messages_fr.properties")).getProperty("deleteAll"));
+    }
+
+    public void testExactMatchIsNeverProvisional() throws Exception {
+        write(new File(source, "messages_en.properties"), "delete", "Delete the selected user");
+        newMemoryEngine(true).run();
+
+        backend.reset();
+        write(new File(source, "other_en.properties"), "remove", "Delete the selected user");
+        newMemoryEngine(true).run();
+        assertEquals(0, backend.getRequests());
+        assertEquals(CacheFiles.hash("Delete the selected user") + "|fr:Delete the selected user",
+                CacheFiles.load(new File(cache, "other_fr.properties")).getProperty("remove"));
+
+        newMemoryEngine(true).run();
+        assertEquals(0, backend.getRequests());
+    }
+
+    public void testProvisionalMatchIsRetranslated() throws Exception {
+        File bundle = new File(source, "messages_en.properties");
+        write(bundle, "delete", "Delete the selected user");
+        newMemoryEngine(true).run();
+
+        backend.reset();
+        write(bundle, "delete", "Delete the selected user", "deleteAll", "Delete the selected users");
+        newMemoryEngine(true).run();
+        assertEquals(0, backend.getRequests());
+        String entry = CacheFiles.load(new File(cache, "messages_fr.properties")).getProperty("deleteAll");
+        assertTrue(entry.startsWith(TranslationMemory.PROVISIONAL));
+
+        TranslationMemory memory = new TranslationMemory(new File(cache, ".tm/en_fr.properties"));
+        memory.load();
+        assertEquals(1, memory.size());
+
+        // A build not asked to retranslate keeps the match
+        newMemoryEngine(false).run();
+        assertEquals(0, backend.getRequests());
+
+        // as does one without budget
+        TranslationEngine engine = newMemoryEngine(false);
+        engine.setMaxCharactersPerBuild(1);
+        engine.run();
+        assertEquals(0, backend.getRequests());
+        assertEquals("fr:Delete the selected user",
+                load(new File(target, "messages_fr.properties")).getProperty("deleteAll"));
+
+        // and the next build with budget translates it properly
+        engine = newMemoryEngine(false);
+        engine.setMaxCharactersPerBuild(1000);
+        engine.run();
+        assertEquals(Collections.singletonList("Delete the selected users"), backend.getTexts());
+        assertEquals("fr:Delete the selected users",
+                load(new File(target, "messages_fr.properties")).getProperty("deleteAll"));
+        memory = new TranslationMemory(new File(cache, ".tm/en_fr.properties"));
+        memory.load();
+        assertEquals("fr:Delete the selected users", memory.find("Delete the selected users", 1f).getTarget());
+        assertEquals(2, memory.size());
+
+        backend.reset();
+        newMemoryEngine(true).run();
+        assertEquals(Arrays.asList(), backend.getTexts());
+    }
+
+    private TranslationEngine newMemoryEngine(boolean retranslate) {
+        TranslationEngine engine = newEngine();
+        engine.setTranslationMemory("apply");
+        engine.setTranslationMemoryThreshold(0.8f);
+        engine.setRetranslateMemoryMatches(retranslate);
+        return engine;
+    }
+}
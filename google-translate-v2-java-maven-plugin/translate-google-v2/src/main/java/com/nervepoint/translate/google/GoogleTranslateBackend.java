@@ -0,0 +1,105 @@
+package com.nervepoint.translate.google;
+
+import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.translate.Translate;
+import com.google.api.services.translate.TranslateRequestInitializer;
+import com.google.api.services.translate.model.TranslationsListResponse;
+import com.google.api.services.translate.model.TranslationsResource;
+import com.nervepoint.translate.TranslateLog;
+import com.nervepoint.translate.TranslationBackend;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Translation using the Google Translate V2 API. The client, and with it the
+ * HTTP transport, is only created when the first batch is translated.
+ */
+public class GoogleTranslateBackend implements TranslationBackend {
+// ------------------------------ FIELDS ------------------------------
+
+    /**
+     * Clients are thread safe and hold no per-build state, so one per API key
+     * is shared by all executions (e.g. modules of a parallel build).
+     */
+    private final static ConcurrentMap<String, Translate> CLIENTS = new ConcurrentHashMap<String, Translate>();
+    private final static JsonFactory JSON_FACTORY = JacksonFactory
+            .getDefaultInstance();
+
+    private final TranslateLog log;
+    private final String apikey;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    public GoogleTranslateBackend(TranslateLog log, String apikey) {
+        this.log = log;
+        this.apikey = apikey;
+    }
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface TranslationBackend ---------------------
+
+    public List<String> translate(List<String> sources, String sourceLang, String targetLang) throws IOException {
+        Translate client;
+        try {
+            client = getClient(apikey);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not set up secure transport for Google Translate", e);
+        }
+
+        Translate.Translations.List res = client.translations().list(sources,
+                fixLangForGoogle(targetLang, false));
+        res.setSource(fixLangForGoogle(sourceLang, true));
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Translating from %s to %s: %s", sourceLang, targetLang, sources));
+        }
+        TranslationsListResponse c = res.execute();
+
+        List<String> translations = new ArrayList<String>();
+        for (TranslationsResource t : c.getTranslations()) {
+            translations.add(t.getTranslatedText());
+        }
+        return translations;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    private static Translate getClient(String apikey) throws GeneralSecurityException, IOException {
+        Translate client = CLIENTS.get(apikey);
+        if (client == null) {
+            // initialize the transport
+            HttpTransport httpTransport = GoogleNetHttpTransport.newTrustedTransport();
+
+            Translate newClient = new Translate.Builder(httpTransport, JSON_FACTORY, null)
+                    .setGoogleClientRequestInitializer(
+                            new TranslateRequestInitializer(apikey))
+                    .setApplicationName("GoogleTranslateMavenPlugin/0.0.7")
+                    .build();
+            client = CLIENTS.putIfAbsent(apikey, newClient);
+            if (client == null) {
+                client = newClient;
+            }
+        }
+        return client;
+    }
+
+    private static String fixLangForGoogle(String sourceLang, boolean isSource) {
+        switch (sourceLang.toLowerCase()) {
+            case "pt_br": return "pt";
+            case "en_us": return "en";
+            case "es_es": return "es";
+        }
+        throw new RuntimeException("I don' know how to googlify language " + sourceLang);
+
+    }
+}
@@ -0,0 +1,29 @@
+package com.nervepoint.translate.google;
+
+import com.nervepoint.translate.TranslateLog;
+import com.nervepoint.translate.TranslationBackend;
+import com.nervepoint.translate.TranslationBackendFactory;
+
+/**
+ * Makes the Google Translate V2 API available as the <code>google-v2</code>
+ * backend.
+ */
+public class GoogleTranslateBackendFactory implements TranslationBackendFactory {
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface TranslationBackendFactory ---------------------
+
+    public String getName() {
+        return "google-v2";
+    }
+
+    public boolean isPersistent() {
+        return true;
+    }
+
+    public TranslationBackend create(TranslateLog log, String apikey) {
+        return new GoogleTranslateBackend(log, apikey);
+    }
+}
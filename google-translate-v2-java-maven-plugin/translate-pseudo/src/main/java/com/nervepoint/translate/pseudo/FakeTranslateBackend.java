@@ -0,0 +1,113 @@
+package com.nervepoint.translate.pseudo;
+
+import com.nervepoint.translate.TranslationBackend;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pseudo translation, selected with the <code>fake</code> backend (or API key). Texts are
+ * "translated" into klingon, so it's easy to see what would be translated
+ * without calling any API.
+ */
+public class FakeTranslateBackend implements TranslationBackend {
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface TranslationBackend ---------------------
+
+    public List<String> translate(List<String> sources, String sourceLang, String targetLang) {
+        List<String> translations = new ArrayList<String>();
+
+        for (String sourceString : sources) {
+            translations.add(replaceForKlingonChars(sourceString));
+        }
+
+        return translations;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    /**
+     * This takes a message and replace the characters for funny klingon chars acorrding to defined tokens.
+     *
+     * @param s
+     * @return A klingonized message
+     */
+    private static String replaceForKlingonChars(String s) {
+        Map<String, String> tokens = getTokensMap();
+
+        String patternString = "(" + StringUtils.join(tokens.keySet(), "|") + ")";
+        Pattern pattern = Pattern.compile(patternString);
+        Matcher matcher = pattern.matcher(s);
+
+        StringBuffer sb = new StringBuffer();
+        String klingonizedMessage;
+
+        while (matcher.find()) {
+            matcher.appendReplacement(sb, tokens.get(matcher.group(1)));
+        }
+        matcher.appendTail(sb);
+        klingonizedMessage = unKlingonizeMissedChars(sb.toString());
+
+        return klingonizedMessage;
+    }
+
+    private static Map<String, String> getTokensMap() {
+        Map<String, String> tokens = new HashMap<String, String>();
+        tokens.put("A", "4");
+        tokens.put("a", "4");
+        tokens.put("E", "3");
+        tokens.put("e", "3");
+        tokens.put("I", "1");
+        tokens.put("i", "1");
+        tokens.put("O", "0");
+        tokens.put("o", "0");
+        tokens.put("U", "û");
+        tokens.put("u", "û");
+        tokens.put("M", "m");
+        tokens.put("N", "Ñ");
+        tokens.put("n", "ñ");
+        tokens.put("C", "Ç");
+        tokens.put("c", "ç");
+        tokens.put("4", "A");
+        tokens.put("3", "Ê");
+        tokens.put("1", "î");
+        tokens.put("0", "Ó");
+        return tokens;
+    }
+
+    /**
+     * Okay klingon messages are funny, but some times we mess the message up by klingonizing characters that we
+     * don't want. The solution is unklingozine the knowing characters.
+     * Example: "Hello {0}", klingon: "H3ll0 {Ó}", correct: "H3ll0 {0}"
+     *
+     * @param s
+     * @return The unklingonized characters message
+     */
+    private static String unKlingonizeMissedChars(String s) {
+        Map<String, String> tokens = new HashMap<String, String>();
+        tokens.put("A", "{4}");
+        tokens.put("Ê", "{3}");
+        tokens.put("î", "{1}");
+        tokens.put("Ó", "{0}");
+
+        String patternString = "\\{(" + StringUtils.join(tokens.keySet(), "|") + ")\\}";
+        Pattern pattern = Pattern.compile(patternString);
+        Matcher matcher = pattern.matcher(s);
+
+        StringBuffer sb = new StringBuffer();
+
+        while (matcher.find()) {
+            matcher.appendReplacement(sb, tokens.get(matcher.group(1)));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+}
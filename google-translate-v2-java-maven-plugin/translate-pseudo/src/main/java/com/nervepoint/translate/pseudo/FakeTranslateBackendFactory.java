@@ -0,0 +1,29 @@
+package com.nervepoint.translate.pseudo;
+
+import com.nervepoint.translate.TranslateLog;
+import com.nervepoint.translate.TranslationBackend;
+import com.nervepoint.translate.TranslationBackendFactory;
+
+/**
+ * Makes the pseudo translation available as the <code>fake</code> backend.
+ * Pseudo translations are never cached.
+ */
+public class FakeTranslateBackendFactory implements TranslationBackendFactory {
+
+// ------------------------ INTERFACE METHODS ------------------------
+
+
+// --------------------- Interface TranslationBackendFactory ---------------------
+
+    public String getName() {
+        return "fake";
+    }
+
+    public boolean isPersistent() {
+        return false;
+    }
+
+    public TranslationBackend create(TranslateLog log, String apikey) {
+        return new FakeTranslateBackend();
+    }
+}
@@ -0,0 +1,175 @@
+package com.nervepoint.translate.runtime;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * A resource bundle read from the compact binary format written by the
+ * translate plugin. The buffer is used as it is (usually memory mapped, see
+ * {@link BinaryBundleControl}); looking up a key compares it against the
+ * buffer directly, and a value only becomes a <code>String</code> the first
+ * time it is used.
+ * <p>
+ * Format, all integers big endian:
+ * <pre>
+ * int    magic (TBN1)
+ * int    version
+ * int    entry count
+ * int    offset of the string table
+ * entry  index, sorted by key hash code, then key
+ *        int key hash (String.hashCode())
+ *        int key offset, int key length
+ *        int value offset, int value length
+ * byte[] string table of UTF-8 keys and values, each distinct string stored once
+ * </pre>
+ * Offsets are relative to the start of the string table.
+ */
+public class BinaryBundle extends ResourceBundle {
+// ------------------------------ FIELDS ------------------------------
+
+    public final static int MAGIC = 0x54424E31;
+    public final static int VERSION = 1;
+    public final static int HEADER_SIZE = 16;
+    public final static int ENTRY_SIZE = 20;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int strings;
+    private final String[] values;
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    /**
+     * @param buffer bundle content
+     * @throws IllegalArgumentException if the buffer does not hold a bundle in a known format
+     */
+    public BinaryBundle(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a binary bundle");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary bundle version " + buffer.getInt(4));
+        }
+        count = buffer.getInt(8);
+        strings = buffer.getInt(12);
+        values = new String[count];
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    protected Object handleGetObject(String key) {
+        int index = find(key);
+        if (index < 0) {
+            return null;
+        }
+        String value = values[index];
+        if (value == null) {
+            int entry = HEADER_SIZE + index * ENTRY_SIZE;
+            value = decode(buffer.getInt(entry + 12), buffer.getInt(entry + 16));
+            values[index] = value;
+        }
+        return value;
+    }
+
+    protected Set<String> handleKeySet() {
+        Set<String> keys = new HashSet<String>();
+        for (int i = 0; i < count; i++) {
+            int entry = HEADER_SIZE + i * ENTRY_SIZE;
+            keys.add(decode(buffer.getInt(entry + 4), buffer.getInt(entry + 8)));
+        }
+        return keys;
+    }
+
+    public Enumeration<String> getKeys() {
+        Set<String> keys = handleKeySet();
+        if (parent != null) {
+            keys.addAll(Collections.list(parent.getKeys()));
+        }
+        return Collections.enumeration(keys);
+    }
+
+    /**
+     * Binary search the index for the key's hash code, then compare the key
+     * against each entry with that hash.
+     */
+    private int find(String key) {
+        int hash = key.hashCode();
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int h = buffer.getInt(HEADER_SIZE + mid * ENTRY_SIZE);
+            if (h < hash) {
+                low = mid + 1;
+            } else if (h > hash) {
+                high = mid - 1;
+            } else {
+                int first = mid;
+                while (first > 0 && buffer.getInt(HEADER_SIZE + (first - 1) * ENTRY_SIZE) == hash) {
+                    first--;
+                }
+                for (int i = first; i < count && buffer.getInt(HEADER_SIZE + i * ENTRY_SIZE) == hash; i++) {
+                    int entry = HEADER_SIZE + i * ENTRY_SIZE;
+                    if (matches(key, buffer.getInt(entry + 4), buffer.getInt(entry + 8))) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compare a string with UTF-8 bytes in the string table, without decoding
+     * them.
+     */
+    private boolean matches(String key, int offset, int length) {
+        int pos = strings + offset;
+        int end = pos + length;
+        int k = 0;
+        int keyLength = key.length();
+        while (pos < end) {
+            int b = buffer.get(pos) & 0xff;
+            int c;
+            if (b < 0x80) {
+                c = b;
+                pos++;
+            } else if (b < 0xe0) {
+                c = ((b & 0x1f) << 6) | (buffer.get(pos + 1) & 0x3f);
+                pos += 2;
+            } else if (b < 0xf0) {
+                c = ((b & 0x0f) << 12) | ((buffer.get(pos + 1) & 0x3f) << 6) | (buffer.get(pos + 2) & 0x3f);
+                pos += 3;
+            } else {
+                int cp = ((b & 0x07) << 18) | ((buffer.get(pos + 1) & 0x3f) << 12)
+                        | ((buffer.get(pos + 2) & 0x3f) << 6) | (buffer.get(pos + 3) & 0x3f);
+                pos += 4;
+                if (k + 1 >= keyLength || key.charAt(k) != Character.highSurrogate(cp)
+                        || key.charAt(k + 1) != Character.lowSurrogate(cp)) {
+                    return false;
+                }
+                k += 2;
+                continue;
+            }
+            if (k >= keyLength || key.charAt(k) != c) {
+                return false;
+            }
+            k++;
+        }
+        return k == keyLength;
+    }
+
+    private String decode(int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(strings + offset);
+        view.get(bytes);
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (java.io.UnsupportedEncodingException uee) {
+            throw new IllegalStateException(uee);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.nervepoint.translate.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * Loads {@link BinaryBundle}s (<code>&lt;base&gt;_&lt;lang&gt;.tbundle</code>
+ * resources), falling back to classes and properties files for locales that
+ * have none. Bundles in a directory on the class path are memory mapped;
+ * bundles inside a jar are read into memory once.
+ * <pre>
+ * ResourceBundle bundle = ResourceBundle.getBundle("com.acme.messages", locale,
+ *         BinaryBundleControl.getInstance());
+ * </pre>
+ */
+public class BinaryBundleControl extends ResourceBundle.Control {
+// ------------------------------ FIELDS ------------------------------
+
+    public final static String FORMAT = "translate.binary";
+    public final static String SUFFIX = "tbundle";
+
+    private final static List<String> FORMATS;
+    private final static BinaryBundleControl INSTANCE = new BinaryBundleControl();
+
+    static {
+        List<String> formats = new ArrayList<String>();
+        formats.add(FORMAT);
+        formats.addAll(FORMAT_DEFAULT);
+        FORMATS = Collections.unmodifiableList(formats);
+    }
+
+// --------------------------- CONSTRUCTORS ---------------------------
+
+    protected BinaryBundleControl() {
+    }
+
+// -------------------------- STATIC METHODS --------------------------
+
+    public static BinaryBundleControl getInstance() {
+        return INSTANCE;
+    }
+
+// -------------------------- OTHER METHODS --------------------------
+
+    public List<String> getFormats(String baseName) {
+        return FORMATS;
+    }
+
+    public ResourceBundle newBundle(String baseName, Locale locale, String format, ClassLoader loader, boolean reload)
+            throws IllegalAccessException, InstantiationException, IOException {
+        if (!FORMAT.equals(format)) {
+            return super.newBundle(baseName, locale, format, loader, reload);
+        }
+        URL url = loader.getResource(toResourceName(toBundleName(baseName, locale), SUFFIX));
+        if (url == null) {
+            return null;
+        }
+        return new BinaryBundle(read(url));
+    }
+
+    private ByteBuffer read(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            RandomAccessFile file = new RandomAccessFile(new File(URLDecoder.decode(url.getPath(), "UTF-8")), "r");
+            try {
+                return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            } finally {
+                // The mapping stays valid once the file is closed
+                file.close();
+            }
+        }
+        InputStream in = url.openStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int read;
+            while ((read = in.read(buf)) != -1) {
+                out.write(buf, 0, read);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+}